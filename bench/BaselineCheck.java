@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * regression check of the accepted language against the verdicts of the first parser of this repo (the one
+ * that stripped all the whitespace and matched substrings), recorded in baseline-verdicts.txt next to this
+ * file: one char per input, 1 valid, 0 invalid, h when the old parser never returned. the inputs are rebuilt
+ * from their index, programs of the {@link ProgramGenerator} and the same programs with a few words or
+ * punctuation chars deleted, inserted or duplicated, and every engine of the parser has to agree with the
+ * recorded verdict.
+ *
+ * names and numbers with only whitespace between them are joined before the check, they were one word to the
+ * old parser and are one word to the lexer then. other inputs that depend on the documented language changes of the token based parser are skipped and counted:
+ * - the old parser never returned for an else or endif outside of an if statement
+ * - whitespace separates tokens: two words with only whitespace between were one word before, see {@link #glued}
+ * - a number can't start with .
+ * - an error in the statement after else fails the if statement, the old parser skipped over it to the endif
+ * - a statement ending with } endif or ) needs a ; before the next statement, like every other statement
+ *
+ * usage:  BaselineCheck [verdicts file]   exits with 1 when an engine disagrees with a recorded verdict
+ */
+public class BaselineCheck {
+
+    private final static String[] FRAGMENTS = {";", "}", "{", "(", ")", "x", "i0", "f0", "c0", "=", "1", "2.5",
+            "+", "*", "input >> i0", "output << f0", "if", "else", "endif", "while", "var int", "const float"};
+
+    private final static String[] ENGINES = {"recursive", "explicit stack", "table driven"};
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "bench/baseline-verdicts.txt");
+        String verdicts = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).replaceAll("\\s", "");
+        RecursiveDescentParser[] engines = {new RecursiveDescentParser(),
+                new RecursiveDescentParser().setExplicitStack(true),
+                new RecursiveDescentParser().setTableDriven(true)};
+        int skipped = 0;
+        int mismatches = 0;
+        for (int index = 0; index < verdicts.length(); index++) {
+            char verdict = verdicts.charAt(index);
+            String code = joinWords(input(index));
+            ParseResult result = engines[0].reset(code).parse();
+            if (verdict == 'h' || changedByLanguage(code, result)) {
+                skipped++;
+                continue;
+            }
+            for (int engine = 0; engine < engines.length; engine++) {
+                boolean valid = engine == 0 ? result.isValid() : engines[engine].reset(code).parse().isValid();
+                if (valid != (verdict == '1') && mismatches++ < 5) {
+                    System.out.println("input " + index + ": the " + ENGINES[engine] + " engine says "
+                            + (valid ? "valid" : "invalid") + ", the first parser said the opposite");
+                    System.out.println("  " + code.replace("\n", "\\n"));
+                }
+            }
+        }
+        System.out.printf("%d inputs, %d skipped for the documented language changes, %d mismatches%n",
+                verdicts.length(), skipped, mismatches);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    /**
+     * the input of an index, the same on every run
+     *
+     * @param index
+     * @return String
+     */
+    static String input(int index) {
+        SplittableRandom random = new SplittableRandom(index);
+        StringWriter program = new StringWriter();
+        try {
+            new ProgramGenerator().seed(random.nextLong()).includes(random.nextInt(3))
+                    .statements(1 + random.nextInt(20)).maxDepth(1 + random.nextInt(3)).generate(program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        StringBuilder code = new StringBuilder(program.toString());
+        int edits = index % 4 == 0 ? 0 : 1 + random.nextInt(2);
+        for (int i = 0; i < edits; i++) {
+            // edits start at a space, so the words they leave are whole words
+            int at = random.nextInt(code.length());
+            while (at < code.length() && !Character.isWhitespace(code.charAt(at))) {
+                at++;
+            }
+            int end = at + 1;
+            switch (random.nextInt(4)) {
+                case 0:
+                    code.insert(at, " " + FRAGMENTS[random.nextInt(FRAGMENTS.length)] + " ");
+                    break;
+                case 1:
+                    // the word after the space
+                    while (end < code.length() && !Character.isWhitespace(code.charAt(end))) {
+                        end++;
+                    }
+                    code.delete(Math.min(at + 1, code.length()), end);
+                    break;
+                case 2:
+                    // the next punctuation char
+                    while (end < code.length() && (Character.isLetterOrDigit(code.charAt(end))
+                            || Character.isWhitespace(code.charAt(end)))) {
+                        end++;
+                    }
+                    if (end < code.length()) {
+                        code.deleteCharAt(end);
+                    }
+                    break;
+                default:
+                    int lineStart = code.lastIndexOf("\n", at - 1) + 1;
+                    int lineEnd = code.indexOf("\n", at);
+                    lineEnd = lineEnd < 0 ? code.length() : lineEnd + 1;
+                    code.insert(lineStart, code.substring(lineStart, lineEnd));
+            }
+        }
+        return code.toString();
+    }
+
+    /**
+     * @param code
+     * @return String the code without the whitespace between two names or numbers
+     */
+    static String joinWords(String code) {
+        TokenStream tokens = new Lexer(code).tokenize();
+        StringBuilder joined = new StringBuilder(code);
+        for (int i = tokens.size() - 2; i >= 0; i--) {
+            if (isValue(tokens.kind(i)) && isValue(tokens.kind(i + 1)) && tokens.start(i + 1) > tokens.end(i)) {
+                joined.delete(tokens.end(i), tokens.start(i + 1));
+            }
+        }
+        return joined.toString();
+    }
+
+    /**
+     * @param code
+     * @param result the result of the recursive engine
+     * @return boolean true when the verdict of the code depends on one of the documented language changes
+     */
+    private static boolean changedByLanguage(String code, ParseResult result) {
+        TokenStream tokens = new Lexer(code).tokenize();
+        for (int i = 0; i + 1 < tokens.size(); i++) {
+            TokenKind kind = tokens.kind(i);
+            TokenKind next = tokens.kind(i + 1);
+            boolean spaced = tokens.start(i + 1) > tokens.end(i);
+            if (spaced && isWord(kind) && isWord(next) && glued(tokens, i)) {
+                return true;
+            }
+            if (!spaced && kind == TokenKind.UNKNOWN && next == TokenKind.NUMBER && code.charAt(tokens.start(i)) == '.') {
+                return true;
+            }
+        }
+        Diagnostics errors = result.getDiagnostics();
+        if (errors.size() == 0) {
+            return false;
+        }
+        int token = tokenAt(tokens, errors.offset(0));
+        if (inElse(tokens, token)) {
+            return true;
+        }
+        if (errors.code(0) == ErrorCode.MISSING_SEMICOLON) {
+            TokenKind before = token > 0 ? tokens.kind(token - 1) : TokenKind.EOF;
+            return before == TokenKind.CLOSE_BRACE || before == TokenKind.ENDIF
+                    || before == TokenKind.CLOSE_PARENTHESE;
+        }
+        return false;
+    }
+
+    /**
+     * @param tokens
+     * @param token
+     * @return boolean true when the token is in the statement after an else
+     */
+    private static boolean inElse(TokenStream tokens, int token) {
+        int depth = 0;
+        for (int i = token - 1; i >= 0; i--) {
+            TokenKind kind = tokens.kind(i);
+            if (kind == TokenKind.ENDIF) {
+                depth++;
+            } else if (kind == TokenKind.IF) {
+                if (depth-- == 0) {
+                    return false;
+                }
+            } else if (kind == TokenKind.ELSE && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the first parser matched a keyword by its prefix where it expected one, so only a few words it read
+     * glued together meant the same as apart: var or const and the data type at the start of a declaration,
+     * the data type and the first name, and the else and endif that end a statement or come after one
+     *
+     * @param tokens
+     * @param i      the first of two words with whitespace between them
+     * @return boolean true when the two words meant something else to the first parser
+     */
+    private static boolean glued(TokenStream tokens, int i) {
+        TokenKind kind = tokens.kind(i);
+        TokenKind next = tokens.kind(i + 1);
+        TokenKind previous = i > 0 ? tokens.kind(i - 1) : TokenKind.SEMICOLON;
+        if ((kind == TokenKind.VAR || kind == TokenKind.CONST) && (next == TokenKind.INT || next == TokenKind.FLOAT)) {
+            return previous != TokenKind.SEMICOLON && previous != TokenKind.CLOSE_PARENTHESE;
+        }
+        if (kind == TokenKind.INT || kind == TokenKind.FLOAT) {
+            return next != TokenKind.IDENTIFIER || previous != TokenKind.VAR && previous != TokenKind.CONST;
+        }
+        return kind != TokenKind.ELSE && kind != TokenKind.ENDIF && next != TokenKind.ELSE && next != TokenKind.ENDIF;
+    }
+
+    private static boolean isValue(TokenKind kind) {
+        return kind == TokenKind.IDENTIFIER || kind == TokenKind.NUMBER;
+    }
+
+    private static boolean isWord(TokenKind kind) {
+        return kind == TokenKind.IDENTIFIER || kind == TokenKind.NUMBER || kind.text != null
+                && Character.isLetter(kind.text.charAt(0));
+    }
+
+    private static int tokenAt(TokenStream tokens, int offset) {
+        int token = 0;
+        while (token + 1 < tokens.size() && tokens.start(token) < offset) {
+            token++;
+        }
+        return token;
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * differential fuzzer of the two parse engines: every input is parsed by the hand written rules and by the
+ * {@link TableDrivenEngine}, and both must agree on isValid() and on where the first error is. the inputs
+ * are programs of the {@link ProgramGenerator}, some with injected errors, and the same programs with
+ * random tokens deleted, inserted, replaced or duplicated and random cuts. the first error is compared by
+ * its position only, the table can report it from another rule, see {@link RecursiveDescentParser#setTableDriven}.
+ * two engines with the same bug agree here, {@link BaselineCheck} holds both to the recorded verdicts of the
+ * first parser
+ *
+ * usage:  EngineFuzzer [inputs] [seed]   exits with 1 when the engines disagree on any input
+ */
+public class EngineFuzzer {
+
+    private final static int MAX_REPORTED = 5;
+
+    /**
+     * texts a mutation inserts besides the fixed tokens of the grammar
+     */
+    private final static String[] WORDS = {"x", "y1", "abc", "0", "7", "32768", "2.5", "1e3", "12ab", "\n", " "};
+
+    private final RecursiveDescentParser recursive = new RecursiveDescentParser();
+    private final RecursiveDescentParser tableDriven = new RecursiveDescentParser().setTableDriven(true);
+    private final List<String> vocabulary = new ArrayList<>();
+    private long inputs = 0;
+    private long invalid = 0;
+    private long mismatches = 0;
+
+    public static void main(String[] args) {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 20_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        EngineFuzzer fuzzer = new EngineFuzzer();
+        SplittableRandom random = new SplittableRandom(seed);
+        while (fuzzer.inputs < count) {
+            String program = generate(random);
+            fuzzer.compare(program);
+            for (int i = 0; i < 4; i++) {
+                fuzzer.compare(fuzzer.mutate(program, random));
+            }
+        }
+        System.out.printf("%d inputs, %d invalid, %d mismatches%n", fuzzer.inputs, fuzzer.invalid,
+                fuzzer.mismatches);
+        System.exit(fuzzer.mismatches == 0 ? 0 : 1);
+    }
+
+    private EngineFuzzer() {
+        for (TokenKind kind : TokenKind.VALUES) {
+            if (kind.text != null) {
+                vocabulary.add(kind.text);
+            }
+        }
+        for (String word : WORDS) {
+            vocabulary.add(word);
+        }
+    }
+
+    /**
+     * a small program of random shape, every third one with an injected error
+     *
+     * @param random
+     * @return String
+     */
+    private static String generate(SplittableRandom random) {
+        ProgramGenerator generator = new ProgramGenerator().seed(random.nextLong())
+                .includes(random.nextInt(3))
+                .consts(random.nextInt(4))
+                .vars(1 + random.nextInt(8))
+                .statements(1 + random.nextInt(30))
+                .maxDepth(1 + random.nextInt(4))
+                .expressionLength(random.nextInt(6));
+        if (random.nextInt(3) == 0) {
+            generator.errorAt(random.nextInt(30));
+        }
+        StringWriter program = new StringWriter();
+        try {
+            generator.generate(program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return program.toString();
+    }
+
+    /**
+     * one to three token edits of the program, sometimes cut short
+     *
+     * @param program
+     * @param random
+     * @return String
+     */
+    private String mutate(String program, SplittableRandom random) {
+        TokenStream tokens = new Lexer(program).tokenize();
+        StringBuilder code = new StringBuilder(program);
+        // edits from the last token to the first keep the offsets of the tokens before them
+        int token = tokens.size() - 1;
+        for (int edits = 1 + random.nextInt(3); edits > 0 && token > 0; edits--) {
+            token = random.nextInt(token);
+            int start = tokens.start(token);
+            int end = start + tokens.length(token);
+            switch (random.nextInt(4)) {
+                case 0:
+                    code.delete(start, end);
+                    break;
+                case 1:
+                    code.insert(start, pick(random) + " ");
+                    break;
+                case 2:
+                    code.replace(start, end, pick(random));
+                    break;
+                default:
+                    code.insert(start, code.substring(start, Math.min(code.length(), end + random.nextInt(40))));
+            }
+        }
+        if (random.nextInt(8) == 0) {
+            code.setLength(random.nextInt(code.length() + 1));
+        }
+        return code.toString();
+    }
+
+    private String pick(SplittableRandom random) {
+        return vocabulary.get(random.nextInt(vocabulary.size()));
+    }
+
+    private void compare(String code) {
+        inputs++;
+        ParseResult expected = recursive.reset(code).parse();
+        ParseResult actual = tableDriven.reset(code).parse();
+        if (!expected.isValid()) {
+            invalid++;
+        }
+        if (expected.isValid() == actual.isValid() && sameFirstError(expected.getDiagnostics(),
+                actual.getDiagnostics())) {
+            return;
+        }
+        if (mismatches++ < MAX_REPORTED) {
+            System.out.println("mismatch on input " + inputs + ":");
+            System.out.println("  recursive:    " + expected.isValid() + " " + expected.getFirstError());
+            System.out.println("  table driven: " + actual.isValid() + " " + actual.getFirstError());
+            System.out.println("  " + code.replace("\n", "\\n"));
+        }
+    }
+
+    private static boolean sameFirstError(Diagnostics expected, Diagnostics actual) {
+        if (expected.size() == 0 || actual.size() == 0) {
+            return expected.size() == actual.size();
+        }
+        return expected.offset(0) == actual.offset(0) && expected.line(0) == actual.line(0)
+                && expected.column(0) == actual.column(0);
+    }
+}
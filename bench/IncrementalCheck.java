@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * edits a generated program the way a user types and checks every result of the {@link IncrementalParser}
+ * against a fresh parse of the edited code: the verdict, the first error, the token count and the dump of the
+ * tree. an edit changes a number, adds an assignment after a ; or deletes a token or types a char, and an
+ * edit that makes the code invalid is undone by the next one. the times of the edits are reported by the path
+ * they took next to the time of the fresh parse
+ *
+ * usage:  IncrementalCheck [edits] [statements] [seed]   exits with 1 on the first edit whose result differs
+ */
+public class IncrementalCheck {
+
+    public static void main(String[] args) {
+        int edits = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long statements = args.length > 1 ? Long.parseLong(args[1]) : 20_000;
+        SplittableRandom random = new SplittableRandom(args.length > 2 ? Long.parseLong(args[2]) : 1);
+        StringWriter program = new StringWriter();
+        try {
+            new ProgramGenerator().seed(random.nextLong()).vars(8).statements(statements).maxDepth(4)
+                    .generate(program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        IncrementalParser incremental = new IncrementalParser(program.toString());
+        RecursiveDescentParser fresh = new RecursiveDescentParser().setBuildAst(true);
+        long incrementalNanos = 0;
+        long fullNanos = 0;
+        long freshNanos = 0;
+        // the edit that undoes the last one when it made the code invalid: offset, deleted length and text
+        int undoOffset = -1;
+        int undoLength = 0;
+        String undoText = "";
+        for (int i = 0; i < edits; i++) {
+            String code = incremental.getCode();
+            int offset;
+            int deleted;
+            String inserted;
+            if (undoOffset >= 0) {
+                offset = undoOffset;
+                deleted = undoLength;
+                inserted = undoText;
+                undoOffset = -1;
+            } else {
+                TokenStream tokens = new Lexer(code).tokenize();
+                int token = random.nextInt(tokens.size() - 1);
+                int kind = random.nextInt(10);
+                offset = tokens.start(token);
+                deleted = 0;
+                inserted = "";
+                if (kind < 4) {
+                    while (tokens.kind(token) != TokenKind.NUMBER && token + 1 < tokens.size()) {
+                        token++;
+                    }
+                    offset = tokens.start(token);
+                    deleted = tokens.length(token);
+                    inserted = Integer.toString(random.nextInt(1000));
+                } else if (kind < 7) {
+                    while (tokens.kind(token) != TokenKind.SEMICOLON && token + 1 < tokens.size()) {
+                        token++;
+                    }
+                    offset = tokens.end(token);
+                    inserted = " i0 = " + random.nextInt(100) + ";";
+                } else if (kind < 9) {
+                    deleted = tokens.length(token);
+                } else {
+                    offset += random.nextInt(tokens.length(token) + 1);
+                    inserted = String.valueOf("x1;({+ ".charAt(random.nextInt(7)));
+                }
+                undoOffset = offset;
+                undoLength = inserted.length();
+                undoText = code.substring(offset, offset + deleted);
+            }
+            int before = incremental.getIncrementalCount();
+            long start = System.nanoTime();
+            ParseResult result = incremental.edit(offset, deleted, inserted);
+            long nanos = System.nanoTime() - start;
+            if (incremental.getIncrementalCount() > before) {
+                incrementalNanos += nanos;
+            } else {
+                fullNanos += nanos;
+            }
+            code = incremental.getCode();
+            start = System.nanoTime();
+            ParseResult expected = fresh.reset(code).parse();
+            freshNanos += System.nanoTime() - start;
+            if (result.isValid()) {
+                undoOffset = -1;
+            }
+            String difference = difference(result, expected, code);
+            if (difference != null) {
+                System.out.println("edit " + i + " (" + offset + "+" + deleted + " \"" + inserted + "\"): "
+                        + difference);
+                System.exit(1);
+            }
+        }
+        int count = incremental.getIncrementalCount();
+        System.out.printf(Locale.ROOT, "%d edits of a %d char code, %d incremental: %.3f ms/edit, %d full: %.3f "
+                        + "ms/edit, fresh parse %.3f ms%n", edits, incremental.getCode().length(), count,
+                count > 0 ? incrementalNanos / 1e6 / count : 0.0, edits - count,
+                edits > count ? fullNanos / 1e6 / (edits - count) : 0.0, freshNanos / 1e6 / edits);
+    }
+
+    private static String difference(ParseResult result, ParseResult expected, String code) {
+        if (result.isValid() != expected.isValid()) {
+            return "valid " + result.isValid() + ", a fresh parse says " + expected.isValid();
+        }
+        if (!String.valueOf(result.getFirstError()).equals(String.valueOf(expected.getFirstError()))) {
+            return "first error " + result.getFirstError() + ", a fresh parse says " + expected.getFirstError();
+        }
+        if (result.getTokenCount() != expected.getTokenCount()) {
+            return result.getTokenCount() + " tokens, a fresh parse says " + expected.getTokenCount();
+        }
+        if (expected.getAst() != null && !result.getAst().dump(code).equals(expected.getAst().dump(code))) {
+            return "the tree differs from the tree of a fresh parse";
+        }
+        return null;
+    }
+}
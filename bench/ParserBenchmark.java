@@ -0,0 +1,285 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * micro benchmarks for the parser end to end and for its hot helpers in isolation.
+ * every benchmark is warmed up, then measured in timed iterations, and reports the throughput,
+ * the average time per operation and the bytes allocated per operation.
+ *
+ * the scaling check parses generated programs of 1 KB up to 100 MB and fails with exit code 1 when the time
+ * per MB of a size is more than {@link #MAX_SCALING_FACTOR} times the best of the smaller sizes, the sizes the
+ * heap can't hold are skipped
+ *
+ * usage:  ParserBenchmark [filter]   only the benchmarks whose name contains filter are run
+ */
+public class ParserBenchmark {
+
+    private final static int WARMUP_ITERATIONS = 5;
+    private final static int MEASUREMENT_ITERATIONS = 5;
+    private final static long ITERATION_NANOS = 1_000_000_000L;
+
+    private final static long[] SCALING_SIZES = {1 << 10, 10 << 10, 100 << 10, 1 << 20, 10 << 20, 100 << 20};
+    private final static double MAX_SCALING_FACTOR = 2.0;
+    // about what a parse of a char costs on the heap: the code, its tokens and the generation buffer
+    private final static int SCALING_BYTES_PER_CHAR = 12;
+
+    // results are folded in here so the JIT can't drop the measured work
+    static volatile int sink;
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        Map<String, String> workloads = workloads();
+        List<Benchmark> benchmarks = new ArrayList<>();
+        RecursiveDescentParser tableDriven = new RecursiveDescentParser().setTableDriven(true);
+        RecursiveDescentParser parallel = new RecursiveDescentParser().setParallel(true);
+        for (Map.Entry<String, String> workload : workloads.entrySet()) {
+            String code = workload.getValue();
+            benchmarks.add(new Benchmark("parse/" + workload.getKey(), code,
+                    input -> ParserPool.parse(input).getTokenCount()));
+            benchmarks.add(new Benchmark("table/" + workload.getKey(), code,
+                    input -> tableDriven.reset(input).parse().getTokenCount()));
+            benchmarks.add(new Benchmark("parallel/" + workload.getKey(), code,
+                    input -> parallel.reset(input).parse().getTokenCount()));
+            benchmarks.add(new Benchmark("tokenize/" + workload.getKey(), code,
+                    input -> new Lexer(input).tokenize().size()));
+        }
+        String names = workloads.get("declarations");
+        benchmarks.add(new Benchmark("scanName/declarations", names, ParserBenchmark::scanNames));
+        String expression = workloads.get("long-expression");
+        benchmarks.add(new Benchmark("scanNumber/long-expression", expression, ParserBenchmark::scanNumbers));
+        // a multi MB code as a String and as the bytes of a mapped ASCII file
+        String large = largeProgram();
+        AsciiCharSequence ascii = asciiView(large);
+        ByteBuffer bytes = ascii.bytes();
+        TokenStream tokens = new TokenStream(large, 1 << 20);
+        benchmarks.add(new Benchmark("tokenize/large", large, input -> new Lexer(input).tokenize(tokens).size()));
+        benchmarks.add(new Benchmark("tokenize-ascii/large", large, input -> new Lexer(ascii).tokenize(tokens).size()));
+        benchmarks.add(new Benchmark("isAscii/large", large, input -> FileUtil.isAscii(bytes) ? 1 : 0));
+        benchmarks.add(new Benchmark("indexOf/large", large,
+                input -> AsciiScanner.INSTANCE.indexOf(bytes, 0, bytes.limit(), (byte) '@')));
+
+        System.out.println("ascii scanner: " + AsciiScanner.INSTANCE.name());
+
+        System.out.printf(Locale.ROOT, "%-32s %10s %14s %14s %14s%n", "benchmark", "chars", "ops/s", "us/op",
+                "bytes/op");
+        for (Benchmark benchmark : benchmarks) {
+            if (benchmark.name.contains(filter)) {
+                benchmark.run();
+            }
+        }
+        if ("scaling".contains(filter) && !scaling()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * parse generated programs of growing sizes and compare their times per MB
+     *
+     * @return boolean false when the time per MB of a size grew more than allowed
+     */
+    static boolean scaling() {
+        RecursiveDescentParser parser = new RecursiveDescentParser();
+        double best = Double.MAX_VALUE;
+        boolean linear = true;
+        System.out.printf(Locale.ROOT, "%n%-32s %10s %14s %14s%n", "scaling", "chars", "ms/parse", "ms/MB");
+        for (long size : SCALING_SIZES) {
+            if (size * SCALING_BYTES_PER_CHAR > Runtime.getRuntime().maxMemory()) {
+                System.out.printf(Locale.ROOT, "%-32s %10d %14s%n", "scaling/" + (size >> 10) + "KB", size,
+                        "skipped, needs -Xmx" + (size * SCALING_BYTES_PER_CHAR >> 20) + "m");
+                continue;
+            }
+            String code = generatedProgram(size);
+            // at least a second of parses, the best one counts
+            long fastest = Long.MAX_VALUE;
+            long deadline = System.nanoTime() + ITERATION_NANOS;
+            for (int i = 0; i < 3 || System.nanoTime() < deadline; i++) {
+                long start = System.nanoTime();
+                sink += parser.reset(code).parse().getTokenCount();
+                fastest = Math.min(fastest, System.nanoTime() - start);
+            }
+            parser.clear();
+            double perMb = fastest / 1e6 / (code.length() / (double) (1 << 20));
+            boolean grew = perMb > best * MAX_SCALING_FACTOR;
+            System.out.printf(Locale.ROOT, "%-32s %10d %14.3f %14.3f%s%n", "scaling/" + (size >> 10) + "KB",
+                    code.length(), fastest / 1e6, perMb,
+                    grew ? String.format(Locale.ROOT, "  more than %.1fx the best %.3f", MAX_SCALING_FACTOR, best)
+                            : "");
+            linear &= !grew;
+            best = Math.min(best, perMb);
+        }
+        return linear;
+    }
+
+    /**
+     * a generated program of about the given number of chars, built in a byte buffer so a large one doesn't
+     * need a char copy
+     *
+     * @param chars
+     * @return String
+     */
+    static String generatedProgram(long chars) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) chars + (1 << 10));
+        try (OutputStreamWriter writer = new OutputStreamWriter(bytes, StandardCharsets.ISO_8859_1)) {
+            // a statement of this generator takes about 57 chars
+            new ProgramGenerator().seed(7).vars(64).statements(Math.max(1, chars / 57)).maxDepth(6)
+                    .generate(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * small, declaration heavy, deeply nested, long expression and generated programs
+     *
+     * @return Map<String, String>
+     */
+    static Map<String, String> workloads() {
+        Map<String, String> workloads = new LinkedHashMap<>();
+        workloads.put("small", "#include<iofile>;\nmain()\nconst float pi = 3.14;\nvar int num, count;\n"
+                + "var float x;\n{\n input >> x;\n if (x >= 3) num = 2 * (count + 1) else output << pi endif;\n"
+                + " while (num < 10) { num = num + 1 }\n}\n$");
+
+        StringBuilder declarations = new StringBuilder("main()\n");
+        for (int i = 0; i < 2000; i++) {
+            declarations.append("const int c").append(i).append(" = ").append(i).append(";\n");
+        }
+        for (int i = 0; i < 2000; i++) {
+            declarations.append("var float v").append(i).append(", w").append(i).append(";\n");
+        }
+        workloads.put("declarations", declarations.append("{\n v0 = c1\n}\n$").toString());
+
+        StringBuilder nested = new StringBuilder("main()\nvar int x;\n{\n");
+        int depth = 200;
+        for (int i = 0; i < depth; i++) {
+            nested.append(i % 2 == 0 ? "while (x < " + i + ") {\n" : "if (x != " + i + ") {\n");
+        }
+        nested.append("x = x + 1\n");
+        for (int i = depth - 1; i >= 0; i--) {
+            nested.append(i % 2 == 0 ? "}\n" : "} endif\n");
+        }
+        workloads.put("nested", nested.append("}\n$").toString());
+
+        StringBuilder expression = new StringBuilder("main()\nvar int x, y;\n{\n x = ");
+        for (int i = 0; i < 5000; i++) {
+            expression.append(i % 7 == 0 ? "(x + " + i + ") * y" : "y % " + (i + 1)).append(i % 3 == 0 ? " - " : " + ");
+        }
+        workloads.put("long-expression", expression.append("1\n}\n$").toString());
+
+        StringWriter generated = new StringWriter();
+        try {
+            new ProgramGenerator().seed(42).vars(32).statements(5000).maxDepth(4).generate(generated);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        workloads.put("generated", generated.toString());
+        return workloads;
+    }
+
+    /**
+     * a generated program of a few MB
+     *
+     * @return String
+     */
+    static String largeProgram() {
+        StringWriter generated = new StringWriter();
+        try {
+            new ProgramGenerator().seed(7).vars(64).statements(150_000).maxDepth(6).generate(generated);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return generated.toString();
+    }
+
+    /**
+     * @param code
+     * @return AsciiCharSequence the code in a direct buffer, like {@link FileUtil#mapFile} returns an ASCII file
+     */
+    static AsciiCharSequence asciiView(String code) {
+        byte[] bytes = code.getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return new AsciiCharSequence(buffer);
+    }
+
+    private static int scanNames(CharSequence code) {
+        int names = 0;
+        for (int i = 0; i < code.length(); ) {
+            int end = Recognizers.scanName(code, i, code.length());
+            names += end > i ? 1 : 0;
+            i = Math.max(end, i + 1);
+        }
+        return names;
+    }
+
+    private static int scanNumbers(CharSequence code) {
+        NumberScanner numbers = new NumberScanner();
+        int sum = 0;
+        for (int i = 0; i < code.length(); ) {
+            int end = i;
+            while (end < code.length() && Character.isDigit(code.charAt(end))) end++;
+            if (end > i) {
+                numbers.scan(code, i, end);
+                sum += numbers.intValue();
+            }
+            i = end + 1;
+        }
+        return sum;
+    }
+
+    static class Benchmark {
+
+        private final static com.sun.management.ThreadMXBean THREADS =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        final String name;
+        final String input;
+        final ToIntFunction<CharSequence> operation;
+
+        Benchmark(String name, String input, ToIntFunction<CharSequence> operation) {
+            this.name = name;
+            this.input = input;
+            this.operation = operation;
+        }
+
+        void run() {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                iteration();
+            }
+            long operations = 0;
+            long nanos = 0;
+            long allocated = 0;
+            for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+                long allocatedBefore = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+                long start = System.nanoTime();
+                operations += iteration();
+                nanos += System.nanoTime() - start;
+                allocated += THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+            }
+            System.out.printf(Locale.ROOT, "%-32s %10d %14.1f %14.3f %14d%n", name, input.length(),
+                    operations / (nanos / 1e9), nanos / 1e3 / operations, allocated / operations);
+        }
+
+        private long iteration() {
+            long operations = 0;
+            long deadline = System.nanoTime() + ITERATION_NANOS;
+            do {
+                sink += operation.applyAsInt(input);
+                operations++;
+            } while (System.nanoTime() < deadline);
+            return operations;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * runs the same programs on a tree walker, on the {@link Interpreter} and on the classes of the
+ * {@link JitCompiler}, one operation is a whole run of a program. define/ measures loading a new class for
+ * a program, which is paid once per source
+ *
+ * usage:  ProgramBenchmark [filter]   only the benchmarks whose name contains filter are run
+ */
+public class ProgramBenchmark {
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        Map<String, String> workloads = workloads();
+        Map<String, ParserBenchmark.Benchmark> benchmarks = new LinkedHashMap<>();
+        for (Map.Entry<String, String> workload : workloads.entrySet()) {
+            String code = workload.getValue();
+            ParseResult result = new RecursiveDescentParser(code).setBuildAst(true).parse();
+            TreeWalker walker = new TreeWalker(result, code);
+            Bytecode bytecode = Interpreter.compile(code);
+            CompiledProgram compiled = JitCompiler.compile(code);
+            benchmarks.put("walk/" + workload.getKey(), new ParserBenchmark.Benchmark("walk/" + workload.getKey(),
+                    code, input -> run(io -> walker.run(io))));
+            benchmarks.put("interpret/" + workload.getKey(), new ParserBenchmark.Benchmark(
+                    "interpret/" + workload.getKey(), code, input -> run(io -> Interpreter.run(bytecode, io))));
+            benchmarks.put("jit/" + workload.getKey(), new ParserBenchmark.Benchmark("jit/" + workload.getKey(),
+                    code, input -> run(compiled)));
+        }
+        Bytecode loops = Interpreter.compile(workloads.get("loops"));
+        benchmarks.put("define/loops", new ParserBenchmark.Benchmark("define/loops", workloads.get("loops"),
+                input -> JitCompiler.define(loops).hashCode()));
+
+        System.out.printf(Locale.ROOT, "%-32s %10s %14s %14s %14s%n", "benchmark", "chars", "ops/s", "us/op",
+                "bytes/op");
+        for (ParserBenchmark.Benchmark benchmark : benchmarks.values()) {
+            if (benchmark.name.contains(filter)) {
+                benchmark.run();
+            }
+        }
+    }
+
+    /**
+     * nested int loops, a float series and data dependent branches
+     *
+     * @return Map<String, String>
+     */
+    static Map<String, String> workloads() {
+        Map<String, String> workloads = new LinkedHashMap<>();
+        workloads.put("loops", "main()\nconst int n = 300;\nvar int i, j, s;\n{\n i = 0;\n s = 0;\n"
+                + " while (i < n) {\n  j = 0;\n  while (j < n) {\n   s = (s + i * j + 7) % 10007;\n   j = j + 1\n  };\n"
+                + "  i = i + 1\n };\n output << s\n}\n$");
+        workloads.put("float-series", "main()\nvar int k;\nvar float x, pi;\n{\n k = 1;\n x = 0;\n"
+                + " while (k < 50000) {\n  x = x + 1.0 / (k * k);\n  k = k + 1\n };\n pi = x * 6;\n output << pi\n}\n$");
+        workloads.put("branches", "main()\nvar int n, m, r, steps;\n{\n n = 1;\n steps = 0;\n"
+                + " while (n < 3000) {\n  m = n;\n  while (m != 1) {\n"
+                + "   r = m % 2;\n   if (r == 0) m = m / 2 else m = 3 * m + 1 endif;\n   steps = steps + 1\n  };\n"
+                + "  n = n + 1\n };\n output << steps\n}\n$");
+        return workloads;
+    }
+
+    private static int run(CompiledProgram program) {
+        SinkIO io = new SinkIO();
+        try {
+            program.run(io);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return io.sum;
+    }
+
+    /**
+     * the input is always 7 or 1.5, the output is folded into a sum
+     */
+    private static class SinkIO implements ProgramIO {
+
+        int sum = 0;
+
+        @Override
+        public int readInt() {
+            return 7;
+        }
+
+        @Override
+        public float readFloat() {
+            return 1.5f;
+        }
+
+        @Override
+        public void writeInt(int value) {
+            sum += value;
+        }
+
+        @Override
+        public void writeFloat(float value) {
+            sum += Float.floatToIntBits(value);
+        }
+    }
+
+    /**
+     * the baseline: evaluates the tree of the program directly, the literals are scanned once up front.
+     * the value of an expression is left in the fields, like the bytecode compiler does
+     */
+    private static class TreeWalker {
+
+        private final AstArena ast;
+        private final SymbolTable symbols;
+        private final int[] intLiterals;
+        private final float[] floatLiterals;
+        private final boolean[] floatLiteral;
+
+        private int[] ints;
+        private float[] floats;
+
+        private boolean isFloat;
+        private int intValue;
+        private float floatValue;
+
+        TreeWalker(ParseResult result, CharSequence source) {
+            ast = result.getAst();
+            symbols = result.getSymbols();
+            intLiterals = new int[ast.size()];
+            floatLiterals = new float[ast.size()];
+            floatLiteral = new boolean[ast.size()];
+            NumberScanner numbers = new NumberScanner();
+            for (int node = 0; node < ast.size(); node++) {
+                if (ast.kind(node) == AstKind.INT_LITERAL || ast.kind(node) == AstKind.FLOAT_LITERAL) {
+                    String text = source.subSequence(ast.start(node), ast.end(node)).toString().replaceAll("\\s", "");
+                    boolean negative = text.charAt(0) == '-';
+                    if (negative || text.charAt(0) == '+') {
+                        text = text.substring(1);
+                    }
+                    floatLiteral[node] = numbers.scan(text, 0, text.length(), negative) == NumberScanner.Kind.FLOAT;
+                    intLiterals[node] = numbers.intValue();
+                    floatLiterals[node] = numbers.floatValue();
+                }
+            }
+        }
+
+        void run(ProgramIO io) throws IOException {
+            ints = new int[symbols.size()];
+            floats = new float[symbols.size()];
+            for (int node = ast.firstChild(ast.root()); node >= 0; node = ast.nextSibling(node)) {
+                if (ast.kind(node) == AstKind.CONST) {
+                    int name = ast.firstChild(node);
+                    expression(ast.nextSibling(name));
+                    assign(ast.symbol(name));
+                } else if (ast.kind(node) == AstKind.BLOCK) {
+                    statement(node, io);
+                }
+            }
+        }
+
+        private void statement(int node, ProgramIO io) throws IOException {
+            switch (ast.kind(node)) {
+                case BLOCK:
+                    for (int child = ast.firstChild(node); child >= 0; child = ast.nextSibling(child)) {
+                        statement(child, io);
+                    }
+                    break;
+                case ASSIGN:
+                    expression(ast.nextSibling(ast.firstChild(node)));
+                    assign(ast.symbol(ast.firstChild(node)));
+                    break;
+                case INPUT: {
+                    int symbol = ast.symbol(ast.firstChild(node));
+                    if (symbols.isFloat(symbol)) {
+                        floats[symbol] = io.readFloat();
+                    } else {
+                        ints[symbol] = io.readInt();
+                    }
+                    break;
+                }
+                case OUTPUT:
+                    expression(ast.firstChild(node));
+                    if (isFloat) {
+                        io.writeFloat(floatValue);
+                    } else {
+                        io.writeInt(intValue);
+                    }
+                    break;
+                case IF: {
+                    int condition = ast.firstChild(node);
+                    int then = ast.nextSibling(condition);
+                    int otherwise = ast.nextSibling(then);
+                    if (condition(condition)) {
+                        statement(then, io);
+                    } else if (otherwise >= 0) {
+                        statement(otherwise, io);
+                    }
+                    break;
+                }
+                case WHILE: {
+                    int condition = ast.firstChild(node);
+                    while (condition(condition)) {
+                        statement(ast.nextSibling(condition), io);
+                    }
+                    break;
+                }
+                default:
+            }
+        }
+
+        private void assign(int symbol) {
+            if (symbols.isFloat(symbol)) {
+                floats[symbol] = isFloat ? floatValue : intValue;
+            } else {
+                ints[symbol] = isFloat ? (int) floatValue : intValue;
+            }
+        }
+
+        private boolean condition(int node) {
+            int left = ast.firstChild(node);
+            expression(left);
+            boolean leftFloat = isFloat;
+            int leftInt = intValue;
+            float leftValue = leftFloat ? floatValue : intValue;
+            expression(ast.nextSibling(left));
+            int relation = ast.kind(node).ordinal() - AstKind.EQUAL_EQUAL.ordinal();
+            if (leftFloat || isFloat) {
+                float a = leftValue;
+                float b = isFloat ? floatValue : intValue;
+                switch (relation) {
+                    case 0: return a == b;
+                    case 1: return a != b;
+                    case 2: return a < b;
+                    case 3: return a <= b;
+                    case 4: return a > b;
+                    default: return a >= b;
+                }
+            }
+            switch (relation) {
+                case 0: return leftInt == intValue;
+                case 1: return leftInt != intValue;
+                case 2: return leftInt < intValue;
+                case 3: return leftInt <= intValue;
+                case 4: return leftInt > intValue;
+                default: return leftInt >= intValue;
+            }
+        }
+
+        private void expression(int node) {
+            AstKind kind = ast.kind(node);
+            if (kind == AstKind.NAME) {
+                int symbol = ast.symbol(node);
+                isFloat = symbols.isFloat(symbol);
+                intValue = ints[symbol];
+                floatValue = floats[symbol];
+                return;
+            }
+            if (kind == AstKind.INT_LITERAL || kind == AstKind.FLOAT_LITERAL) {
+                isFloat = floatLiteral[node];
+                intValue = intLiterals[node];
+                floatValue = floatLiterals[node];
+                return;
+            }
+            int left = ast.firstChild(node);
+            expression(left);
+            boolean leftFloat = isFloat;
+            int leftInt = intValue;
+            float leftValue = leftFloat ? floatValue : intValue;
+            expression(ast.nextSibling(left));
+            if (leftFloat || isFloat) {
+                float a = leftValue;
+                float b = isFloat ? floatValue : intValue;
+                isFloat = true;
+                switch (kind) {
+                    case ADD: floatValue = a + b; break;
+                    case SUBTRACT: floatValue = a - b; break;
+                    case MULTIPLY: floatValue = a * b; break;
+                    case DIVIDE: floatValue = a / b; break;
+                    default: floatValue = a % b;
+                }
+            } else {
+                switch (kind) {
+                    case ADD: intValue = leftInt + intValue; break;
+                    case SUBTRACT: intValue = leftInt - intValue; break;
+                    case MULTIPLY: intValue = leftInt * intValue; break;
+                    case DIVIDE: intValue = leftInt / intValue; break;
+                    default: intValue = leftInt % intValue;
+                }
+            }
+        }
+    }
+}
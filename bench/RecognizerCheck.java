@@ -0,0 +1,91 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+
+/**
+ * runs the {@link Recognizers} with rdp.recognizers.compat on, so every name and include directive they
+ * recognize or reject is matched against the regex of {@link Rejexes} too. the inputs are generated programs
+ * lexed and parsed whole, random codes made of fragments of names and directives with the recognizers run
+ * from every offset, a few directives with names the first parser took, and a long run of directives without
+ * their >
+ *
+ * usage:  RecognizerCheck [inputs] [seed]   exits with 1 on the first input where the two disagree
+ */
+public class RecognizerCheck {
+
+    /**
+     * directives the first parser took, the name goes on to the next > over ; { and line breaks
+     */
+    private final static String[] INCLUDES = {"#include<a;b>;", "#include<a{b>;", "#include<a\nb>;",
+            " # include < lib 1 > ; "};
+
+    private final static String[] FRAGMENTS = {"#", "include", "<", ">", ";", "{", "}", " ", "\t", "\r", "\n",
+            "# include <", "#include<", "lib", "a1", "Zz", "9", "x y", "main", "é", "$", "()"};
+
+    public static void main(String[] args) {
+        // before the first use of Recognizers, the property is read once when the class is initialized
+        System.setProperty("rdp.recognizers.compat", "true");
+        if (!Recognizers.COMPATIBILITY_CHECK) {
+            System.out.println("the recognizers were initialized before the property was set");
+            System.exit(2);
+        }
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 20_000;
+        SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 1);
+        RecursiveDescentParser parser = new RecursiveDescentParser();
+        long chars = 0;
+        try {
+            for (String include : INCLUDES) {
+                TokenStream tokens = new Lexer(include + "main()\n{\n}\n$").tokenize();
+                if (tokens.kind(0) != TokenKind.LIBRARY || tokens.kind(1) != TokenKind.MAIN) {
+                    System.out.println("the lexer doesn't read a directive from: " + include);
+                    System.exit(1);
+                }
+            }
+            for (long i = 0; i < count; i++) {
+                String code = i % 4 == 0 ? generate(random) : random(random);
+                parser.reset(code).parse();
+                for (int start = 0; start < code.length(); start++) {
+                    Recognizers.scanName(code, start, code.length());
+                    if (code.charAt(start) == '#') {
+                        Recognizers.scanInclude(code, start);
+                    }
+                }
+                chars += code.length();
+            }
+            // every # starts a directive that is never closed, the lexer looks for the > once and not once per #
+            String unclosed = "#include<lib\n".repeat(200_000);
+            long start = System.nanoTime();
+            new Lexer(unclosed).tokenize();
+            System.out.printf("%d unclosed directives lexed in %.1f ms%n", 200_000,
+                    (System.nanoTime() - start) / 1e6);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+        System.out.printf("%d inputs, %d chars, no disagreement%n", count, chars);
+    }
+
+    private static String generate(SplittableRandom random) {
+        StringWriter program = new StringWriter();
+        try {
+            new ProgramGenerator().seed(random.nextLong()).includes(random.nextInt(4))
+                    .statements(1 + random.nextInt(20)).generate(program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return program.toString();
+    }
+
+    private static String random(SplittableRandom random) {
+        StringBuilder code = new StringBuilder();
+        for (int i = random.nextInt(60); i > 0; i--) {
+            if (random.nextInt(10) == 0) {
+                code.append((char) random.nextInt(256));
+            } else {
+                code.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+        }
+        return code.toString();
+    }
+}
@@ -0,0 +1,64 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * read only char view over a buffer of single byte chars (ASCII or ISO-8859-1), used to parse a
+ * memory mapped file without decoding it into a second full size copy on the heap
+ */
+public class AsciiCharSequence implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    public AsciiCharSequence(ByteBuffer bytes) {
+        this(bytes, 0, bytes.limit());
+    }
+
+    private AsciiCharSequence(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * the underlying buffer, positions in it are offset by {@link #offset()}
+     *
+     * @return ByteBuffer
+     */
+    public ByteBuffer bytes() {
+        return bytes;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        return (char) (bytes.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new AsciiCharSequence(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] copy = new byte[length];
+        bytes.get(offset, copy);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+}
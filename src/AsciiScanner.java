@@ -0,0 +1,95 @@
+import java.nio.ByteBuffer;
+
+/**
+ * the scans over a whole buffer of single byte chars, a mapped file is checked for ASCII before it is parsed
+ * without a decode and searched for a byte, here 8 bytes at a time in a long.
+ *
+ * vector/VectorAsciiScanner.java does the same 32 or 64 bytes at a time with jdk.incubator.vector, it is
+ * compiled and run with  --add-modules jdk.incubator.vector  and loaded by reflection so the sources build
+ * without the module. when it is missing or -Dparser.vector=false is set the scans below are used
+ */
+abstract class AsciiScanner {
+
+    final static AsciiScanner INSTANCE = load();
+
+    /**
+     * @param bytes
+     * @param from
+     * @param to
+     * @return boolean true when no byte in [from, to) has its high bit set
+     */
+    abstract boolean isAscii(ByteBuffer bytes, int from, int to);
+
+    /**
+     * @param bytes
+     * @param from
+     * @param to
+     * @param value
+     * @return int the index of the first byte in [from, to) equal to value, -1 when there is none
+     */
+    abstract int indexOf(ByteBuffer bytes, int from, int to, byte value);
+
+    /**
+     * @return String the scans in use
+     */
+    abstract String name();
+
+    private static AsciiScanner load() {
+        if (!Boolean.parseBoolean(System.getProperty("parser.vector", "true"))) {
+            return new Scalar();
+        }
+        try {
+            return (AsciiScanner) Class.forName("VectorAsciiScanner").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // not compiled, or jdk.incubator.vector isn't in the boot layer
+            return new Scalar();
+        }
+    }
+
+    final static class Scalar extends AsciiScanner {
+
+        private final static long ONES = 0x0101010101010101L;
+        private final static long HIGH_BITS = 0x8080808080808080L;
+        private final static long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+        @Override
+        boolean isAscii(ByteBuffer bytes, int from, int to) {
+            int i = from;
+            for (; i + Long.BYTES <= to; i += Long.BYTES) {
+                if ((bytes.getLong(i) & HIGH_BITS) != 0) {
+                    return false;
+                }
+            }
+            for (; i < to; i++) {
+                if (bytes.get(i) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int indexOf(ByteBuffer bytes, int from, int to, byte value) {
+            int i = from;
+            long pattern = (value & 0xFFL) * ONES;
+            for (; i + Long.BYTES <= to; i += Long.BYTES) {
+                // the high bit of every byte equal to value
+                long equal = bytes.getLong(i) ^ pattern;
+                if (~((equal & LOW_BITS) + LOW_BITS | equal | LOW_BITS) != 0) {
+                    break;
+                }
+            }
+            for (; i < to; i++) {
+                if (bytes.get(i) == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        String name() {
+            return "scalar";
+        }
+    }
+}
@@ -0,0 +1,222 @@
+import java.util.Arrays;
+
+/**
+ * abstract syntax tree stored as a structure of arrays, a node is an index into parallel primitive columns
+ * (kind, first child, next sibling, source span and symbol id) so no object is allocated per node and
+ * the tree can be walked in a cache friendly way. node 0 is the PROGRAM root and children are linked in
+ * source order, -1 marks a missing child, sibling or symbol
+ */
+public class AstArena {
+
+    private byte[] kinds;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] starts;
+    private int[] ends;
+    private int[] symbols;
+    // only needed while the tree is built, dropped by trim()
+    private int[] lastChildren;
+    private int size = 0;
+
+    public AstArena(int capacity) {
+        capacity = Math.max(capacity, 16);
+        kinds = new byte[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        symbols = new int[capacity];
+        lastChildren = new int[capacity];
+    }
+
+    /**
+     * append a node without children
+     *
+     * @param kind
+     * @param start  the offset of the first char of the node in the source
+     * @param end    the offset after the last char of the node in the source
+     * @param symbol the symbol id of a NAME node, -1 for the other nodes
+     * @return int the node
+     */
+    int add(AstKind kind, int start, int end, int symbol) {
+        if (size == kinds.length) {
+            int capacity = size + (size >> 1);
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        firstChildren[size] = -1;
+        nextSiblings[size] = -1;
+        lastChildren[size] = -1;
+        starts[size] = start;
+        ends[size] = end;
+        symbols[size] = symbol;
+        return size++;
+    }
+
+    /**
+     * link a node as the last child of a parent
+     *
+     * @param parent
+     * @param child
+     */
+    void addChild(int parent, int child) {
+        if (lastChildren[parent] < 0) {
+            firstChildren[parent] = child;
+        } else {
+            nextSiblings[lastChildren[parent]] = child;
+        }
+        lastChildren[parent] = child;
+    }
+
+    void setEnd(int node, int end) {
+        ends[node] = end;
+    }
+
+    /**
+     * drop the build time column once the tree is complete
+     */
+    void trim() {
+        lastChildren = null;
+    }
+
+    /**
+     * replace a child of a node by the children of the root of another tree, in place: the nodes of the other
+     * tree are appended and linked where the child was, the source offsets from shiftFrom on are moved by delta
+     * so the tree is the one a fresh parse of the edited code builds. the nodes of the replaced child stay in
+     * the arena, unlinked
+     *
+     * @param parent
+     * @param previous    the sibling before the child, -1 when the child is the first one
+     * @param child       the replaced child
+     * @param replacement a tree whose root holds the new children, in the offsets of the edited source
+     * @param shiftFrom   the first offset after the edit in the old source
+     * @param delta       the change of the source length
+     */
+    void replaceChild(int parent, int previous, int child, AstArena replacement, int shiftFrom, int delta) {
+        trim();
+        for (int node = 0; node < size; node++) {
+            if (starts[node] >= shiftFrom) {
+                starts[node] += delta;
+            }
+            if (ends[node] >= shiftFrom) {
+                ends[node] += delta;
+            }
+        }
+        // node i of the replacement becomes node base + i, its root isn't copied
+        int base = size - 1;
+        int capacity = size + replacement.size - 1;
+        if (capacity > kinds.length) {
+            capacity = Math.max(capacity, size + (size >> 1));
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+        }
+        for (int node = 1; node < replacement.size; node++) {
+            int copy = base + node;
+            kinds[copy] = replacement.kinds[node];
+            firstChildren[copy] = replacement.firstChildren[node] < 0 ? -1 : replacement.firstChildren[node] + base;
+            nextSiblings[copy] = replacement.nextSiblings[node] < 0 ? -1 : replacement.nextSiblings[node] + base;
+            starts[copy] = replacement.starts[node];
+            ends[copy] = replacement.ends[node];
+            symbols[copy] = replacement.symbols[node];
+        }
+        size += replacement.size - 1;
+        int after = nextSiblings[child];
+        int first = after;
+        if (replacement.firstChildren[0] >= 0) {
+            first = replacement.firstChildren[0] + base;
+            int last = first;
+            while (nextSiblings[last] >= 0) {
+                last = nextSiblings[last];
+            }
+            nextSiblings[last] = after;
+        }
+        if (previous < 0) {
+            firstChildren[parent] = first;
+        } else {
+            nextSiblings[previous] = first;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    public AstKind kind(int node) {
+        return AstKind.VALUES[kinds[node]];
+    }
+
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int start(int node) {
+        return starts[node];
+    }
+
+    public int end(int node) {
+        return ends[node];
+    }
+
+    public int symbol(int node) {
+        return symbols[node];
+    }
+
+    /**
+     * the child of a node at a position
+     *
+     * @param node
+     * @param index
+     * @return int the child or -1 if the node has less children
+     */
+    public int child(int node, int index) {
+        int child = firstChildren[node];
+        for (int i = 0; i < index && child >= 0; i++) {
+            child = nextSiblings[child];
+        }
+        return child;
+    }
+
+    /**
+     * render the tree as nested lists, used to inspect the output of the parser
+     *
+     * @param source the code the tree was parsed from
+     * @return String
+     */
+    public String dump(CharSequence source) {
+        StringBuilder builder = new StringBuilder();
+        if (size > 0) {
+            dump(source, root(), 0, builder);
+        }
+        return builder.toString();
+    }
+
+    private void dump(CharSequence source, int node, int depth, StringBuilder builder) {
+        for (int i = 0; i < depth; i++) builder.append("  ");
+        builder.append(kind(node));
+        if (firstChildren[node] < 0 && kind(node) != AstKind.EMPTY) {
+            builder.append(' ').append(source, starts[node], ends[node]);
+        }
+        builder.append('\n');
+        for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+            dump(source, child, depth + 1, builder);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * the kinds of the nodes in the {@link AstArena}
+ *
+ * PROGRAM       libraries, consts, vars and the main block
+ * CONST         the declared NAME and its literal
+ * VAR           the declared NAMEs
+ * IF            the condition, the statement and the else statement, a missing statement is an EMPTY node
+ * WHILE         the condition and the BLOCK
+ * ASSIGN        the target NAME and the expression
+ * INPUT         the NAME read into
+ * OUTPUT        the name or the literal written
+ * operators     the two operands
+ */
+public enum AstKind {
+    PROGRAM,
+    LIBRARY,
+    CONST,
+    VAR,
+    BLOCK,
+    EMPTY,
+    ASSIGN,
+    INPUT,
+    OUTPUT,
+    IF,
+    WHILE,
+    EQUAL_EQUAL,
+    NOT_EQUAL,
+    LESS,
+    LESS_EQUAL,
+    GREATER,
+    GREATER_EQUAL,
+    ADD,
+    SUBTRACT,
+    MULTIPLY,
+    DIVIDE,
+    MODULO,
+    NAME,
+    INT_LITERAL,
+    FLOAT_LITERAL;
+
+    final static AstKind[] VALUES = values();
+
+    /**
+     * the operator node kind of an operator token
+     *
+     * @param kind
+     * @return AstKind
+     */
+    static AstKind ofOperator(TokenKind kind) {
+        switch (kind) {
+            case EQUAL_EQUAL: return EQUAL_EQUAL;
+            case NOT_EQUAL: return NOT_EQUAL;
+            case LESS: return LESS;
+            case LESS_EQUAL: return LESS_EQUAL;
+            case GREATER: return GREATER;
+            case GREATER_EQUAL: return GREATER_EQUAL;
+            case PLUS: return ADD;
+            case MINUS: return SUBTRACT;
+            case STAR: return MULTIPLY;
+            case SLASH: return DIVIDE;
+            case PERCENT: return MODULO;
+            default: throw new IllegalArgumentException("not an operator: " + kind);
+        }
+    }
+}
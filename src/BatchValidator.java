@@ -0,0 +1,198 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * validate many source files concurrently on a work-stealing pool, every file is parsed by its own
+ * thread-confined parser. the bytes of the files being parsed at the same time are bounded so a batch of
+ * large files can't exhaust the memory
+ */
+public class BatchValidator {
+
+    private final int threads;
+    private final long maxInFlightBytes;
+    private final int maxErrors;
+    private ParseCache cache;
+    private LibraryResolver libraries;
+
+    public BatchValidator(int threads, long maxInFlightBytes) {
+        this(threads, maxInFlightBytes, 1);
+    }
+
+    public BatchValidator(int threads, long maxInFlightBytes, int maxErrors) {
+        this.threads = threads;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * look the files up in a cache first, so unchanged files are not parsed again
+     *
+     * @param cache
+     * @return BatchValidator this validator
+     */
+    public BatchValidator setCache(ParseCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * resolve the includes of the files, the libraries are loaded once for the whole batch, and a batch is a
+     * run of the resolver that sees the files changed since the last one, see {@link LibraryResolver#refresh}.
+     * a file with includes isn't looked up in the cache since its result depends on the libraries too
+     *
+     * @param libraries
+     * @return BatchValidator this validator
+     */
+    public BatchValidator setLibraries(LibraryResolver libraries) {
+        this.libraries = libraries;
+        return this;
+    }
+
+    /**
+     * expand the arguments to the list of files to validate:
+     * a directory is walked recursively, an argument with * ? [ or { is a glob,
+     * an argument starting with @ is a file that lists one path per line, anything else is a file
+     *
+     * @param arguments
+     * @return List<Path>
+     * @throws IOException
+     */
+    public static List<Path> collectFiles(List<String> arguments) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String argument : arguments) {
+            if (argument.startsWith("@")) {
+                List<String> listed = Files.readAllLines(Paths.get(argument.substring(1))).stream()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty())
+                        .collect(Collectors.toList());
+                files.addAll(collectFiles(listed));
+            } else if (isGlob(argument)) {
+                files.addAll(expandGlob(argument));
+            } else {
+                Path path = Paths.get(argument);
+                if (Files.isDirectory(path)) {
+                    files.addAll(walk(path, file -> true));
+                } else {
+                    files.add(path);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static boolean isGlob(String argument) {
+        return argument.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    /**
+     * walk the directory before the first glob char and keep the files matching the whole glob
+     */
+    private static List<Path> expandGlob(String glob) throws IOException {
+        String normalized = glob.replace('\\', '/');
+        int firstGlobChar = 0;
+        while (!isGlob(normalized.substring(firstGlobChar, firstGlobChar + 1))) {
+            firstGlobChar++;
+        }
+        int baseEnd = normalized.lastIndexOf('/', firstGlobChar);
+        Path base = Paths.get(baseEnd < 0 ? "." : normalized.substring(0, Math.max(baseEnd, 1)));
+        String pattern = baseEnd < 0 ? normalized : normalized.substring(baseEnd + 1);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        return walk(base, file -> matcher.matches(base.relativize(file)));
+    }
+
+    private static List<Path> walk(Path directory, PathMatcher filter) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).filter(filter::matches).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * validate the files, print the result of every file as it completes and the aggregate throughput at the end
+     *
+     * @param files
+     * @param out
+     * @return int the number of files that are invalid or couldn't be read
+     * @throws InterruptedException
+     */
+    public int run(List<Path> files, PrintStream out) throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        // permits are KB so the budget of a large batch fits in an int
+        int budget = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxInFlightBytes >> 10));
+        Semaphore inFlight = new Semaphore(budget);
+        AtomicInteger failures = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        long startTime = System.nanoTime();
+        if (libraries != null) {
+            // the libraries changed since the last batch are loaded again
+            libraries.refresh();
+        }
+        try {
+            for (Path file : files) {
+                long size = file.toFile().length();
+                int permits = (int) Math.min(budget, Math.max(1, size >> 10));
+                inFlight.acquire(permits);
+                pool.execute(() -> {
+                    try {
+                        String line;
+                        try {
+                            CharSequence code = FileUtil.mapFile(file.toFile());
+                            ParseResult result = cache != null && (libraries == null || !hasInclude(code))
+                                    ? cache.parse(code, maxErrors) : ParserPool.parse(code, maxErrors, libraries);
+                            // the bytes of the file and not its chars, the throughput is in MB
+                            bytes.addAndGet(size);
+                            if (!result.isValid()) {
+                                failures.incrementAndGet();
+                            }
+                            line = file + ": " + (result.isValid() ? "valid syntax"
+                                    : "invalid syntax, " + String.join(System.lineSeparator() + "    ", result.getErrors()));
+                        } catch (IOException | RuntimeException e) {
+                            failures.incrementAndGet();
+                            line = file + ": error, " + e.getMessage();
+                        }
+                        synchronized (out) {
+                            out.println(line);
+                        }
+                    } finally {
+                        inFlight.release(permits);
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        double seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+        out.printf("%d files, %d failed, %.3f s, %.1f files/s, %.2f MB/s%n", files.size(), failures.get(), seconds,
+                files.size() / seconds, bytes.get() / 1e6 / seconds);
+        return failures.get();
+    }
+
+    private static boolean hasInclude(CharSequence code) {
+        if (code instanceof AsciiCharSequence) {
+            AsciiCharSequence ascii = (AsciiCharSequence) code;
+            int from = ascii.offset();
+            return AsciiScanner.INSTANCE.indexOf(ascii.bytes(), from, from + ascii.length(), (byte) '#') >= 0;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) == '#') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
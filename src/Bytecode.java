@@ -0,0 +1,121 @@
+/**
+ * a validated program lowered to register based bytecode. every instruction is 4 ints:  op, a, b, c.
+ * there is a file of int registers and a file of float registers, the first registers of both files are the
+ * vars indexed by their symbol id, the consts are folded into constant registers and the temporaries of
+ * the expressions come last
+ *
+ * I... / F...      a = b op c in the int or float registers, MOV, I2F and F2I only use a and b
+ * JMP              continue at a
+ * JI.. / JF..      continue at a unless  b relation c  holds
+ * IN / OUT         read into, or write, the register a
+ * HALT             end of the program
+ */
+public final class Bytecode {
+
+    final static int HALT = 0;
+    final static int IMOV = 1;
+    final static int FMOV = 2;
+    final static int I2F = 3;
+    final static int F2I = 4;
+    final static int IADD = 5;
+    final static int ISUB = 6;
+    final static int IMUL = 7;
+    final static int IDIV = 8;
+    final static int IREM = 9;
+    final static int FADD = 10;
+    final static int FSUB = 11;
+    final static int FMUL = 12;
+    final static int FDIV = 13;
+    final static int FREM = 14;
+    final static int JMP = 15;
+    // jump unless the relation holds, in the order of the relational AstKinds
+    final static int JIEQ = 16;
+    final static int JINE = 17;
+    final static int JILT = 18;
+    final static int JILE = 19;
+    final static int JIGT = 20;
+    final static int JIGE = 21;
+    final static int JFEQ = 22;
+    final static int JFNE = 23;
+    final static int JFLT = 24;
+    final static int JFLE = 25;
+    final static int JFGT = 26;
+    final static int JFGE = 27;
+    final static int IN_INT = 28;
+    final static int IN_FLOAT = 29;
+    final static int OUT_INT = 30;
+    final static int OUT_FLOAT = 31;
+
+    private final static String[] NAMES = {
+            "HALT", "IMOV", "FMOV", "I2F", "F2I", "IADD", "ISUB", "IMUL", "IDIV", "IREM",
+            "FADD", "FSUB", "FMUL", "FDIV", "FREM", "JMP", "JIEQ", "JINE", "JILT", "JILE", "JIGT", "JIGE",
+            "JFEQ", "JFNE", "JFLT", "JFLE", "JFGT", "JFGE", "IN_INT", "IN_FLOAT", "OUT_INT", "OUT_FLOAT",
+    };
+
+    /**
+     * the register file of the a, b and c fields of every op:  i int, f float, - not a register
+     */
+    final static String[] FIELDS = {
+            "---", "ii-", "ff-", "fi-", "if-", "iii", "iii", "iii", "iii", "iii",
+            "fff", "fff", "fff", "fff", "fff", "---", "-ii", "-ii", "-ii", "-ii", "-ii", "-ii",
+            "-ff", "-ff", "-ff", "-ff", "-ff", "-ff", "i--", "f--", "i--", "f--",
+    };
+
+    final int[] code;
+    // the registers at the start of a run, the constant registers hold their values and the rest are 0
+    final int[] ints;
+    final float[] floats;
+    // the constant registers are from the number of symbols up to these ends, they are never written
+    final int intConstantEnd;
+    final int floatConstantEnd;
+    private final SymbolTable symbols;
+
+    Bytecode(int[] code, int[] ints, float[] floats, int intConstantEnd, int floatConstantEnd, SymbolTable symbols) {
+        this.code = code;
+        this.ints = ints;
+        this.floats = floats;
+        this.intConstantEnd = intConstantEnd;
+        this.floatConstantEnd = floatConstantEnd;
+        this.symbols = symbols;
+    }
+
+    /**
+     * @return int the number of instructions
+     */
+    public int size() {
+        return code.length / 4;
+    }
+
+    public int intRegisters() {
+        return ints.length;
+    }
+
+    public int floatRegisters() {
+        return floats.length;
+    }
+
+    /**
+     * @return SymbolTable the names of the vars, a var is at the register of its symbol id
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * one instruction per line, used to inspect the output of the compiler
+     *
+     * @return String
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += 4) {
+            builder.append(pc / 4).append(": ").append(NAMES[code[pc]]);
+            for (int i = 1; i < 4; i++) {
+                builder.append(' ').append(code[pc + i]);
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
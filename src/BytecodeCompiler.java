@@ -0,0 +1,444 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * lower the tree of a valid program to {@link Bytecode}. the vars live in the registers of their symbol id,
+ * every const name and literal becomes a constant register, operators on two constants are folded and the
+ * top operator of an assignment writes straight into the assigned var. the temporaries of a statement are
+ * numbered from 0 while compiling and moved after the constant registers at the end
+ *
+ * mixed int and float operands are computed as float, a float assigned to an int var is truncated
+ */
+final class BytecodeCompiler {
+
+    // marks a temporary register until the number of constant registers is known
+    private final static int TEMP = 1 << 30;
+
+    private final CharSequence source;
+    private final AstArena ast;
+    private final SymbolTable symbols;
+    private final NumberScanner numbers = new NumberScanner();
+
+    private int[] code = new int[256];
+    private int size = 0;
+
+    // the constant register of every const name, -1 for the vars
+    private final int[] constRegisters;
+    private final Map<Integer, Integer> intConstants = new HashMap<>();
+    private final Map<Integer, Integer> floatConstants = new HashMap<>();
+    private int[] intValues = new int[16];
+    private float[] floatValues = new float[16];
+
+    private int intTemps = 0;
+    private int floatTemps = 0;
+    private int maxIntTemps = 0;
+    private int maxFloatTemps = 0;
+
+    // what the last compiled expression left: its type and, for a constant, its value
+    private boolean isFloat;
+    private boolean isConstant;
+    private int intValue;
+    private float floatValue;
+
+    private BytecodeCompiler(CharSequence source, AstArena ast, SymbolTable symbols) {
+        this.source = source;
+        this.ast = ast;
+        this.symbols = symbols;
+        constRegisters = new int[symbols.size()];
+        Arrays.fill(constRegisters, -1);
+    }
+
+    /**
+     * @param result a valid parse with its tree
+     * @param source the code of the parse
+     * @return Bytecode
+     */
+    static Bytecode compile(ParseResult result, CharSequence source) {
+        if (result.getAst() == null) {
+            throw new IllegalArgumentException("only a valid program parsed with its tree can be compiled");
+        }
+        return new BytecodeCompiler(source, result.getAst(), result.getSymbols()).program();
+    }
+
+    private Bytecode program() {
+        for (int node = ast.firstChild(ast.root()); node >= 0; node = ast.nextSibling(node)) {
+            switch (ast.kind(node)) {
+                case CONST:
+                    constDeclaration(node);
+                    break;
+                case BLOCK:
+                    statement(node);
+                    break;
+                default:
+                    // libraries and vars need no code, the vars start at 0
+            }
+        }
+        emit(Bytecode.HALT, 0, 0, 0);
+        return link();
+    }
+
+    private void constDeclaration(int node) {
+        int name = ast.firstChild(node);
+        int symbol = ast.symbol(name);
+        literal(ast.nextSibling(name));
+        constRegisters[symbol] = symbols.isFloat(symbol) ? floatConstant(isFloat ? floatValue : intValue)
+                : intConstant(intValue);
+    }
+
+    private void statement(int node) {
+        intTemps = 0;
+        floatTemps = 0;
+        switch (ast.kind(node)) {
+            case BLOCK:
+                for (int child = ast.firstChild(node); child >= 0; child = ast.nextSibling(child)) {
+                    statement(child);
+                }
+                break;
+            case ASSIGN: {
+                int name = ast.firstChild(node);
+                int symbol = ast.symbol(name);
+                expressionInto(ast.nextSibling(name), symbol, symbols.isFloat(symbol));
+                break;
+            }
+            case INPUT: {
+                int symbol = ast.symbol(ast.firstChild(node));
+                emit(symbols.isFloat(symbol) ? Bytecode.IN_FLOAT : Bytecode.IN_INT, symbol, 0, 0);
+                break;
+            }
+            case OUTPUT: {
+                int register = operand(ast.firstChild(node));
+                emit(isFloat ? Bytecode.OUT_FLOAT : Bytecode.OUT_INT, register, 0, 0);
+                break;
+            }
+            case IF: {
+                int condition = ast.firstChild(node);
+                int then = ast.nextSibling(condition);
+                int otherwise = ast.nextSibling(then);
+                int jumpToElse = jumpUnless(condition);
+                statement(then);
+                if (ast.kind(otherwise) == AstKind.EMPTY) {
+                    target(jumpToElse, size);
+                } else {
+                    int jumpToEnd = emit(Bytecode.JMP, -1, 0, 0);
+                    target(jumpToElse, size);
+                    statement(otherwise);
+                    target(jumpToEnd, size);
+                }
+                break;
+            }
+            case WHILE: {
+                int top = size;
+                int condition = ast.firstChild(node);
+                int jumpToEnd = jumpUnless(condition);
+                statement(ast.nextSibling(condition));
+                emit(Bytecode.JMP, top, 0, 0);
+                target(jumpToEnd, size);
+                break;
+            }
+            default:
+                // EMPTY
+        }
+    }
+
+    /**
+     * compile an expression whose value ends in a register of the given file
+     */
+    private void expressionInto(int node, int register, boolean toFloat) {
+        AstKind kind = ast.kind(node);
+        if (!isArithmetic(kind)) {
+            move(register, toFloat, operand(node));
+            return;
+        }
+        int left = expression(ast.firstChild(node));
+        boolean leftFloat = isFloat;
+        boolean leftConstant = isConstant;
+        int leftInt = intValue;
+        float leftFloatValue = floatValue;
+        int right = expression(ast.nextSibling(ast.firstChild(node)));
+        if (!(leftConstant && isConstant) && (leftFloat || isFloat) == toFloat) {
+            // the top operator writes straight into the register
+            binary(kind, register, left, leftFloat, right, isFloat);
+            return;
+        }
+        move(register, toFloat, binaryOrFold(kind, left, leftFloat, leftConstant, leftInt, leftFloatValue, right));
+    }
+
+    /**
+     * @return int the register of the value of an expression, the fields tell its type and constant value
+     */
+    private int expression(int node) {
+        AstKind kind = ast.kind(node);
+        if (!isArithmetic(kind)) {
+            return operand(node);
+        }
+        int left = expression(ast.firstChild(node));
+        boolean leftFloat = isFloat;
+        boolean leftConstant = isConstant;
+        int leftInt = intValue;
+        float leftFloatValue = floatValue;
+        int right = expression(ast.nextSibling(ast.firstChild(node)));
+        return binaryOrFold(kind, left, leftFloat, leftConstant, leftInt, leftFloatValue, right);
+    }
+
+    /**
+     * the right operand is described by the fields
+     */
+    private int binaryOrFold(AstKind kind, int left, boolean leftFloat, boolean leftConstant, int leftInt,
+                             float leftFloatValue, int right) {
+        boolean toFloat = leftFloat || isFloat;
+        if (leftConstant && isConstant) {
+            if (toFloat) {
+                float a = leftFloat ? leftFloatValue : leftInt;
+                float b = isFloat ? floatValue : intValue;
+                return constant(fold(kind, a, b));
+            }
+            if ((kind != AstKind.DIVIDE && kind != AstKind.MODULO) || intValue != 0) {
+                return constant(fold(kind, leftInt, intValue));
+            }
+            // a division by zero is left to fail when the program runs
+        }
+        boolean rightFloat = isFloat;
+        int result = toFloat ? TEMP | floatTemps++ : TEMP | intTemps++;
+        maxIntTemps = Math.max(maxIntTemps, intTemps);
+        maxFloatTemps = Math.max(maxFloatTemps, floatTemps);
+        binary(kind, result, left, leftFloat, right, rightFloat);
+        isFloat = toFloat;
+        isConstant = false;
+        return result;
+    }
+
+    /**
+     * emit  result = left op right, an int operand of a float operation is converted first
+     */
+    private void binary(AstKind kind, int result, int left, boolean leftFloat, int right, boolean rightFloat) {
+        int offset = kind.ordinal() - AstKind.ADD.ordinal();
+        if (leftFloat || rightFloat) {
+            emit(Bytecode.FADD + offset, result, leftFloat ? left : toFloat(left), rightFloat ? right : toFloat(right));
+        } else {
+            emit(Bytecode.IADD + offset, result, left, right);
+        }
+    }
+
+    /**
+     * @return int the register of a name or a literal, the fields tell its type and constant value
+     */
+    private int operand(int node) {
+        if (ast.kind(node) == AstKind.NAME) {
+            int symbol = ast.symbol(node);
+            isFloat = symbols.isFloat(symbol);
+            isConstant = constRegisters[symbol] >= 0;
+            if (isConstant) {
+                int register = constRegisters[symbol];
+                if (isFloat) {
+                    floatValue = floatValues[register - symbols.size()];
+                } else {
+                    intValue = intValues[register - symbols.size()];
+                }
+                return register;
+            }
+            return symbol;
+        }
+        literal(node);
+        return isFloat ? floatConstant(floatValue) : intConstant(intValue);
+    }
+
+    /**
+     * read the value of a literal node into the fields, the node may start with a sign token
+     */
+    private void literal(int node) {
+        int start = ast.start(node);
+        int end = ast.end(node);
+        boolean negative = false;
+        if (source.charAt(start) == '-' || source.charAt(start) == '+') {
+            negative = source.charAt(start) == '-';
+            start++;
+            while (Character.isWhitespace(source.charAt(start))) {
+                start++;
+            }
+        }
+        NumberScanner.Kind kind = numbers.scan(source, start, end, negative);
+        isFloat = kind == NumberScanner.Kind.FLOAT;
+        isConstant = true;
+        intValue = numbers.intValue();
+        floatValue = numbers.floatValue();
+    }
+
+    /**
+     * emit a jump past the code that follows, taken when the condition doesn't hold
+     *
+     * @return int the jump to point at the end of that code with {@link #target}, -1 when there is no jump
+     */
+    private int jumpUnless(int condition) {
+        intTemps = 0;
+        floatTemps = 0;
+        int offset = ast.kind(condition).ordinal() - AstKind.EQUAL_EQUAL.ordinal();
+        int left = operand(ast.firstChild(condition));
+        boolean leftFloat = isFloat;
+        boolean leftConstant = isConstant;
+        float leftValue = isFloat ? floatValue : intValue;
+        int leftInt = intValue;
+        int right = operand(ast.nextSibling(ast.firstChild(condition)));
+        if (leftConstant && isConstant) {
+            boolean holds = leftFloat || isFloat ? compare(offset, leftValue, isFloat ? floatValue : intValue)
+                    : compare(offset, leftInt, intValue);
+            return holds ? -1 : emit(Bytecode.JMP, -1, 0, 0);
+        }
+        if (leftFloat || isFloat) {
+            return emit(Bytecode.JFEQ + offset, -1, leftFloat ? left : toFloat(left), isFloat ? right : toFloat(right));
+        }
+        return emit(Bytecode.JIEQ + offset, -1, left, right);
+    }
+
+    private void target(int jump, int target) {
+        if (jump >= 0) {
+            code[jump + 1] = target;
+        }
+    }
+
+    private void move(int register, boolean toFloat, int value) {
+        if (toFloat) {
+            emit(isFloat ? Bytecode.FMOV : Bytecode.I2F, register, value, 0);
+        } else {
+            emit(isFloat ? Bytecode.F2I : Bytecode.IMOV, register, value, 0);
+        }
+    }
+
+    /**
+     * @return int a float register holding the value of an int register
+     */
+    private int toFloat(int register) {
+        int result = TEMP | floatTemps++;
+        maxFloatTemps = Math.max(maxFloatTemps, floatTemps);
+        emit(Bytecode.I2F, result, register, 0);
+        return result;
+    }
+
+    private int constant(int value) {
+        isFloat = false;
+        isConstant = true;
+        intValue = value;
+        return intConstant(value);
+    }
+
+    private int constant(float value) {
+        isFloat = true;
+        isConstant = true;
+        floatValue = value;
+        return floatConstant(value);
+    }
+
+    private int intConstant(int value) {
+        Integer register = intConstants.get(value);
+        if (register == null) {
+            int index = intConstants.size();
+            if (index == intValues.length) {
+                intValues = Arrays.copyOf(intValues, index << 1);
+            }
+            intValues[index] = value;
+            register = symbols.size() + index;
+            intConstants.put(value, register);
+        }
+        return register;
+    }
+
+    private int floatConstant(float value) {
+        Integer register = floatConstants.get(Float.floatToIntBits(value));
+        if (register == null) {
+            int index = floatConstants.size();
+            if (index == floatValues.length) {
+                floatValues = Arrays.copyOf(floatValues, index << 1);
+            }
+            floatValues[index] = value;
+            register = symbols.size() + index;
+            floatConstants.put(Float.floatToIntBits(value), register);
+        }
+        return register;
+    }
+
+    private static boolean isArithmetic(AstKind kind) {
+        return kind.ordinal() >= AstKind.ADD.ordinal() && kind.ordinal() <= AstKind.MODULO.ordinal();
+    }
+
+    private static int fold(AstKind kind, int a, int b) {
+        switch (kind) {
+            case ADD: return a + b;
+            case SUBTRACT: return a - b;
+            case MULTIPLY: return a * b;
+            case DIVIDE: return a / b;
+            default: return a % b;
+        }
+    }
+
+    private static float fold(AstKind kind, float a, float b) {
+        switch (kind) {
+            case ADD: return a + b;
+            case SUBTRACT: return a - b;
+            case MULTIPLY: return a * b;
+            case DIVIDE: return a / b;
+            default: return a % b;
+        }
+    }
+
+    /**
+     * @param relation the offset of the relational AstKind from EQUAL_EQUAL
+     */
+    private static boolean compare(int relation, int a, int b) {
+        switch (relation) {
+            case 0: return a == b;
+            case 1: return a != b;
+            case 2: return a < b;
+            case 3: return a <= b;
+            case 4: return a > b;
+            default: return a >= b;
+        }
+    }
+
+    private static boolean compare(int relation, float a, float b) {
+        switch (relation) {
+            case 0: return a == b;
+            case 1: return a != b;
+            case 2: return a < b;
+            case 3: return a <= b;
+            case 4: return a > b;
+            default: return a >= b;
+        }
+    }
+
+    /**
+     * @return int the position of the instruction
+     */
+    private int emit(int op, int a, int b, int c) {
+        if (size + 4 > code.length) {
+            code = Arrays.copyOf(code, code.length << 1);
+        }
+        code[size] = op;
+        code[size + 1] = a;
+        code[size + 2] = b;
+        code[size + 3] = c;
+        size += 4;
+        return size - 4;
+    }
+
+    /**
+     * move the temporaries after the constant registers and build the initial registers
+     */
+    private Bytecode link() {
+        int intBase = symbols.size() + intConstants.size();
+        int floatBase = symbols.size() + floatConstants.size();
+        for (int pc = 0; pc < size; pc += 4) {
+            String fields = Bytecode.FIELDS[code[pc]];
+            for (int i = 0; i < 3; i++) {
+                int value = code[pc + 1 + i];
+                if (fields.charAt(i) != '-' && (value & TEMP) != 0) {
+                    code[pc + 1 + i] = (fields.charAt(i) == 'i' ? intBase : floatBase) + (value & ~TEMP);
+                }
+            }
+        }
+        int[] ints = new int[intBase + maxIntTemps];
+        float[] floats = new float[floatBase + maxFloatTemps];
+        System.arraycopy(intValues, 0, ints, symbols.size(), intConstants.size());
+        System.arraycopy(floatValues, 0, floats, symbols.size(), floatConstants.size());
+        return new Bytecode(Arrays.copyOf(code, size), ints, floats, intBase, floatBase, symbols);
+    }
+}
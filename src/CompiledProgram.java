@@ -0,0 +1,15 @@
+import java.io.IOException;
+
+/**
+ * a valid program ready to run, see {@link JitCompiler}
+ */
+public interface CompiledProgram {
+
+    /**
+     * run the program from its start, every run starts with all the vars at 0
+     *
+     * @param io
+     * @throws IOException when the io fails
+     */
+    void run(ProgramIO io) throws IOException;
+}
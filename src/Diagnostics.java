@@ -0,0 +1,155 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * the errors of a parse as rows of parallel primitive arrays (code, offset, line, column, expected tokens),
+ * recording an error allocates nothing. the text of an error is rendered only when it is asked for
+ */
+public final class Diagnostics {
+
+    final static Diagnostics EMPTY = new Diagnostics(0);
+
+    private byte[] codes;
+    private int[] offsets;
+    private int[] lines;
+    private int[] columns;
+    private long[] expected;
+    private int size = 0;
+
+    Diagnostics(int capacity) {
+        codes = new byte[capacity];
+        offsets = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+        expected = new long[capacity];
+    }
+
+    /**
+     * append an error, the arrays only grow when more errors than ever before are recorded
+     */
+    void add(ErrorCode code, int offset, int line, int column) {
+        if (size == codes.length) {
+            int capacity = Math.max(4, size << 1);
+            codes = Arrays.copyOf(codes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            expected = Arrays.copyOf(expected, capacity);
+        }
+        codes[size] = (byte) code.ordinal();
+        offsets[size] = offset;
+        lines[size] = line;
+        columns[size] = column;
+        expected[size] = code.expected;
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return Diagnostics a copy sized to the recorded errors, so a parser can reuse its own buffer
+     */
+    Diagnostics copy() {
+        if (size == 0) {
+            return EMPTY;
+        }
+        Diagnostics copy = new Diagnostics(size);
+        System.arraycopy(codes, 0, copy.codes, 0, size);
+        System.arraycopy(offsets, 0, copy.offsets, 0, size);
+        System.arraycopy(lines, 0, copy.lines, 0, size);
+        System.arraycopy(columns, 0, copy.columns, 0, size);
+        System.arraycopy(expected, 0, copy.expected, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public ErrorCode code(int index) {
+        return ErrorCode.VALUES[codes[index]];
+    }
+
+    /**
+     * @param index
+     * @return int the char offset in the source of the token the error happened at
+     */
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public int column(int index) {
+        return columns[index];
+    }
+
+    /**
+     * @param index
+     * @return long the bit mask of the token kinds expected where the error happened, see {@link TokenKind#maskOf}
+     */
+    public long expected(int index) {
+        return expected[index];
+    }
+
+    /**
+     * the text of an error:  message at line L, column C
+     *
+     * @param index
+     * @return String
+     */
+    public String render(int index) {
+        return code(index).message.trim() + " at line " + lines[index] + ", column " + columns[index];
+    }
+
+    /**
+     * the text of an error followed by the source line it happened in and a ^ under its column
+     *
+     * @param index
+     * @param source the code that was parsed
+     * @return String
+     */
+    public String render(int index, CharSequence source) {
+        int offset = Math.min(offsets[index], source.length());
+        int lineStart = offset;
+        while (lineStart > 0 && source.charAt(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+        int lineEnd = offset;
+        while (lineEnd < source.length() && source.charAt(lineEnd) != '\n' && source.charAt(lineEnd) != '\r') {
+            lineEnd++;
+        }
+        StringBuilder text = new StringBuilder(render(index)).append(System.lineSeparator());
+        text.append(source, lineStart, lineEnd).append(System.lineSeparator());
+        for (int i = lineStart; i < offset; i++) {
+            text.append(source.charAt(i) == '\t' ? '\t' : ' ');
+        }
+        return text.append('^').toString();
+    }
+
+    /**
+     * @return List<String> a view that renders every error when it is read
+     */
+    public List<String> messages() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+                }
+                return render(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
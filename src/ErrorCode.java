@@ -0,0 +1,90 @@
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * the errors the parser can report, every error carries its message and the tokens that were expected
+ * where it happened. the parser records only the code and the position of an error, the message is
+ * rendered when it is asked for by {@link Diagnostics}
+ */
+public enum ErrorCode {
+    MISSING_END_OF_FILE("missing $ or there is wrong text before $", TokenKind.END_OF_FILE),
+    TEXT_AFTER_END_OF_FILE("unexpected text after $", TokenKind.EOF),
+    NESTED_TOO_DEEPLY("the program is nested too deeply for the recursive parser"),
+    LIBRARIES("error in the libraries declaration"),
+    LIBRARY("error in the library declaration", TokenKind.LIBRARY),
+    MAIN("error in the main declaration", TokenKind.MAIN),
+    VARIABLES("error in the variables declaration"),
+    CONST("error in the const declaration"),
+    VARS("error in the vars declaration"),
+    CONST_DATATYPE("error in the datatype of consts declaration"),
+    CONST_NAME("error in the name of consts declaration", TokenKind.IDENTIFIER),
+    MISSING_CONST_EQUAL("missing = in the consts declaration", TokenKind.EQUAL),
+    CONST_VALUE("error in the value of consts declaration", TokenKind.NUMBER, TokenKind.MINUS),
+    VAR_DATATYPE("error in the datatype of vars declaration"),
+    VAR_NAME_LIST("error in the name list of vars declaration", TokenKind.IDENTIFIER),
+    DATATYPE("error in the datatype declaration", TokenKind.INT, TokenKind.FLOAT),
+    INT_OUT_OF_RANGE("integer literal out of range"),
+    BODY("error in the body declaration"),
+    MISSING_OPEN_BRACE("missing { or there is wrong text before {", TokenKind.OPEN_BRACE),
+    STATEMENT_LIST("error in the statement list"),
+    MISSING_CLOSE_BRACE("missing } or there is wrong text before }", TokenKind.CLOSE_BRACE),
+    STATEMENT("error in the statement declaration"),
+    IO_STATEMENT("error in the io statement declaration"),
+    BLOCK_STATEMENT("error in the block statement declaration"),
+    IF_STATEMENT("error in the if statement declaration"),
+    WHILE_STATEMENT("error in the while statement declaration"),
+    ASSIGN_STATEMENT("error in the assign statement declaration"),
+    ASSIGN_NAME("error in the assign statement name declaration", TokenKind.IDENTIFIER),
+    ASSIGN_EXPRESSION("error in the assign statement exp declaration"),
+    UNDECLARED_NAME("name not exist"),
+    ADD_OPERATION("error in the add operation declaration"),
+    MUL_OPERATION("error in the mul operation declaration"),
+    MISSING_FACTOR("factor is missing or there is wrong text before factor", TokenKind.IDENTIFIER, TokenKind.NUMBER, TokenKind.OPEN_PARENTHESES),
+    FACTOR_NAME("error in the factor name"),
+    FACTOR_NOT_NUMBER("error in the factor value, non number assigned to number"),
+    FACTOR_NOT_INTEGER("error in the factor value, non integer assigned to integer"),
+    MISSING_OPEN_PARENTHESES("missing ( or there is wrong text before (", TokenKind.OPEN_PARENTHESES),
+    MISSING_CLOSE_PARENTHESE("missing ) or there is wrong text before )", TokenKind.CLOSE_PARENTHESE),
+    BOOLEAN_EXPRESSION("error in the boolean expression"),
+    FIRST_PARAMETER("error in the first parameter", TokenKind.IDENTIFIER, TokenKind.NUMBER),
+    RELATIONAL_OPERATION("error in the RELATIONAL OPERATIONS", TokenKind.EQUAL_EQUAL, TokenKind.NOT_EQUAL, TokenKind.LESS, TokenKind.LESS_EQUAL, TokenKind.GREATER, TokenKind.GREATER_EQUAL),
+    SECOND_PARAMETER("error in the second parameter", TokenKind.IDENTIFIER, TokenKind.NUMBER),
+    IF("error in the if statement"),
+    ELSE("error in the else"),
+    MISSING_ENDIF("missing endif or there is wrong text before endif", TokenKind.ENDIF),
+    MISSING_INPUT_OPERATOR("missing >> for input statement or there is wrong text before >>", TokenKind.INPUT_OPERATOR),
+    INPUT_PARAMETER("error in the input parameter", TokenKind.IDENTIFIER),
+    MISSING_OUTPUT_OPERATOR("<< is missing for output or there is wrong text before <<", TokenKind.OUTPUT_OPERATOR),
+    OUTPUT_PARAMETER("error in the output parameter", TokenKind.IDENTIFIER, TokenKind.NUMBER),
+    // the codes are stored by ordinal in caches and on the wire, new codes go at the end
+    LIBRARY_NOT_FOUND("library not found in the include path"),
+    LIBRARY_INVALID("error in the included library"),
+    INCLUDE_CYCLE("the library includes itself"),
+    LIBRARY_CONFLICT("a name of the library is declared by another included library"),
+    MISSING_SEMICOLON("missing ; between statements", TokenKind.SEMICOLON);
+
+    final static ErrorCode[] VALUES = values();
+
+    final String message;
+
+    /**
+     * bit mask of the expected token kinds, 0 for the errors that only wrap the error of a nested rule
+     */
+    final long expected;
+
+    ErrorCode(String message, TokenKind... expected) {
+        this.message = message;
+        this.expected = expected.length == 0 ? 0 : TokenKind.maskOf(EnumSet.of(expected[0], expected));
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return Set<TokenKind> the token kinds the parser expected where this error happened
+     */
+    public Set<TokenKind> getExpected() {
+        return TokenKind.kindsOf(expected);
+    }
+}
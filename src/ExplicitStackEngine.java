@@ -0,0 +1,445 @@
+import java.util.Arrays;
+
+/**
+ * drives the nested part of the grammar (block, stmt-list, statement, if, while, ass-stmt, exp, term, factor)
+ * with an explicit stack of frames on the heap instead of the Java call stack, so programs nested thousands
+ * of levels deep parse without a StackOverflowError. the memory used is bounded by the nesting depth of the input.
+ *
+ * every frame runs the same steps, errors and tree building as the matching method of
+ * {@link RecursiveDescentParser}, a call to a nested rule pushes a frame and resumes the caller in its
+ * next state once the callee returns its result
+ */
+class ExplicitStackEngine {
+
+    // frame types
+    private final static int BLOCK = 0;
+    private final static int STATEMENT_LIST = 1;
+    private final static int STATEMENT = 2;
+    private final static int IF = 3;
+    private final static int WHILE = 4;
+    private final static int ASSIGN = 5;
+    private final static int EXP = 6;
+    private final static int TERM = 7;
+    private final static int FACTOR = 8;
+
+    // the profiled rule of every frame type, a statement list is no rule of its own
+    private final static ParseProfiler.Rule[] RULES = {ParseProfiler.Rule.BLOCK, null, ParseProfiler.Rule.STATEMENT,
+            ParseProfiler.Rule.IF, ParseProfiler.Rule.WHILE, ParseProfiler.Rule.ASSIGN, ParseProfiler.Rule.EXP,
+            ParseProfiler.Rule.TERM, ParseProfiler.Rule.FACTOR};
+
+    private final RecursiveDescentParser parser;
+
+    private int[] types = new int[64];
+    private int[] states = new int[64];
+    // the AST node of the frame, or the block a statement list adds to
+    private int[] nodes = new int[64];
+    // the left operand of exp and term, or the token a statement of a statement list starts at
+    private int[] lefts = new int[64];
+    // the operator token kind of exp and term
+    private int[] operators = new int[64];
+    // the time the frame was entered, only when profiling is on
+    private long[] starts = ParseProfiler.ENABLED ? new long[64] : null;
+    private int depth = 0;
+
+    // the result of the frame that returned last
+    private boolean result;
+
+    ExplicitStackEngine(RecursiveDescentParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * non-terminal function:  {    stmt-list    }
+     *
+     * @return boolean
+     */
+    boolean block() {
+        depth = 0;
+        push(BLOCK, -1);
+        run();
+        return result;
+    }
+
+    private void push(int type, int node) {
+        if (depth == types.length) {
+            int capacity = depth * 2;
+            types = Arrays.copyOf(types, capacity);
+            states = Arrays.copyOf(states, capacity);
+            nodes = Arrays.copyOf(nodes, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            operators = Arrays.copyOf(operators, capacity);
+            if (ParseProfiler.ENABLED) {
+                starts = Arrays.copyOf(starts, capacity);
+            }
+        }
+        if (ParseProfiler.ENABLED && RULES[type] != null) {
+            starts[depth] = parser.profiler.enter(RULES[type]);
+        }
+        types[depth] = type;
+        states[depth] = 0;
+        nodes[depth] = node;
+        depth++;
+    }
+
+    /**
+     * leave the top frame with a result for its caller
+     *
+     * @param result
+     */
+    private void ret(boolean result) {
+        this.result = result;
+        depth--;
+        if (ParseProfiler.ENABLED && RULES[types[depth]] != null) {
+            parser.profiler.exit(RULES[types[depth]], starts[depth]);
+        }
+    }
+
+    /**
+     * resume the caller in a state after the callee returns
+     */
+    private void call(int frame, int nextState, int type, int node) {
+        states[frame] = nextState;
+        push(type, node);
+    }
+
+    private void run() {
+        while (depth > 0) {
+            int frame = depth - 1;
+            switch (types[frame]) {
+                case BLOCK: block(frame); break;
+                case STATEMENT_LIST: stmtList(frame); break;
+                case STATEMENT: statement(frame); break;
+                case IF: ifStatement(frame); break;
+                case WHILE: whileStatement(frame); break;
+                case ASSIGN: assignStatement(frame); break;
+                case EXP: exp(frame); break;
+                case TERM: term(frame); break;
+                default: factor(frame);
+            }
+        }
+    }
+
+    private void block(int frame) {
+        RecursiveDescentParser p = parser;
+        if (states[frame] == 0) {
+            if (!p.match(TokenKind.OPEN_BRACE)) {
+                p.error(ErrorCode.MISSING_OPEN_BRACE);
+                ret(false);
+                return;
+            }
+            nodes[frame] = p.ast != null ? p.node(AstKind.BLOCK, -1) : -1;
+            p.next();
+            call(frame, 1, STATEMENT_LIST, nodes[frame]);
+            return;
+        }
+        if (!result) {
+            p.error(ErrorCode.STATEMENT_LIST);
+            ret(false);
+        } else if (p.match(TokenKind.CLOSE_BRACE)) {
+            p.next();
+            if (p.ast != null) {
+                p.close(nodes[frame]);
+                p.lastNode = nodes[frame];
+            }
+            ret(true);
+        } else {
+            p.error(ErrorCode.MISSING_CLOSE_BRACE);
+            ret(false);
+        }
+    }
+
+    private void stmtList(int frame) {
+        RecursiveDescentParser p = parser;
+        if (states[frame] == 1) {
+            // an else or endif outside of an if statement is an empty statement that can't be skipped
+            boolean failed = !result || (p.tokenPointer == lefts[frame] && !p.match(TokenKind.CLOSE_BRACE)
+                    && !p.match(TokenKind.SEMICOLON));
+            if (failed) {
+                p.error(ErrorCode.STATEMENT);
+                if (!p.recoverStatement(lefts[frame])) {
+                    ret(false);
+                    return;
+                }
+                if (p.atEndOfCode()) {
+                    ret(true);
+                    return;
+                }
+            } else {
+                if (p.ast != null && p.lastNode >= 0) {
+                    p.ast.addChild(nodes[frame], p.lastNode);
+                }
+                if (!p.separator(Integer.MAX_VALUE)) {
+                    ret(false);
+                    return;
+                }
+                while (p.match(TokenKind.SEMICOLON)) {
+                    p.next();
+                }
+            }
+        }
+        if (p.match(TokenKind.CLOSE_BRACE)) {
+            ret(true);
+            return;
+        }
+        while (p.match(TokenKind.SEMICOLON)) {
+            p.next();
+        }
+        lefts[frame] = p.tokenPointer;
+        call(frame, 1, STATEMENT, -1);
+    }
+
+    private void statement(int frame) {
+        RecursiveDescentParser p = parser;
+        switch (states[frame]) {
+            case 0:
+                p.lastNode = -1;
+                // null statement
+                if (p.match(RecursiveDescentParser.END_STATEMENT)) {
+                    ret(true);
+                } else if (p.match(TokenKind.OPEN_BRACE)) {
+                    call(frame, 1, BLOCK, -1);
+                } else if (p.match(TokenKind.IF)) {
+                    call(frame, 2, IF, -1);
+                } else if (p.match(TokenKind.WHILE)) {
+                    call(frame, 3, WHILE, -1);
+                } else if (p.match(TokenKind.INPUT) || p.match(TokenKind.OUTPUT)) {
+                    if (!p.inOutStatement()) {
+                        p.error(ErrorCode.IO_STATEMENT);
+                        ret(false);
+                    } else {
+                        ret(true);
+                    }
+                } else {
+                    call(frame, 4, ASSIGN, -1);
+                }
+                return;
+            case 1:
+                returnWithError(ErrorCode.BLOCK_STATEMENT);
+                return;
+            case 2:
+                returnWithError(ErrorCode.IF_STATEMENT);
+                return;
+            case 3:
+                returnWithError(ErrorCode.WHILE_STATEMENT);
+                return;
+            default:
+                returnWithError(ErrorCode.ASSIGN_STATEMENT);
+        }
+    }
+
+    /**
+     * pass the result of the callee on, adding an error when it failed
+     */
+    private void returnWithError(ErrorCode error) {
+        if (!result) {
+            parser.error(error);
+        }
+        ret(result);
+    }
+
+    private void ifStatement(int frame) {
+        RecursiveDescentParser p = parser;
+        int ifNode = nodes[frame];
+        switch (states[frame]) {
+            case 0:
+                ifNode = nodes[frame] = p.ast != null ? p.node(AstKind.IF, -1) : -1;
+                p.next();
+                if (!p.match(TokenKind.OPEN_PARENTHESES)) {
+                    p.error(ErrorCode.MISSING_OPEN_PARENTHESES);
+                    ret(false);
+                    return;
+                }
+                p.next();
+                if (!p.booleanExpresion()) {
+                    p.error(ErrorCode.BOOLEAN_EXPRESSION);
+                    ret(false);
+                    return;
+                }
+                if (p.ast != null) {
+                    p.ast.addChild(ifNode, p.lastNode);
+                }
+                if (!p.match(TokenKind.CLOSE_PARENTHESE)) {
+                    p.error(ErrorCode.MISSING_CLOSE_PARENTHESE);
+                    ret(false);
+                    return;
+                }
+                p.next();
+                call(frame, 1, STATEMENT, -1);
+                return;
+            case 1:
+                if (!result) {
+                    p.error(ErrorCode.IF);
+                    ret(false);
+                    return;
+                }
+                if (p.ast != null) {
+                    p.addLastNode(ifNode);
+                }
+                // else-part:  else statement |  @
+                p.lastNode = -1;
+                if (p.match(TokenKind.ELSE)) {
+                    p.next();
+                    call(frame, 2, STATEMENT, -1);
+                    return;
+                }
+                endIf(ifNode, true);
+                return;
+            default:
+                endIf(ifNode, result);
+        }
+    }
+
+    /**
+     * the end of an if statement after its else part, or where the else part would be
+     *
+     * @param ifNode
+     * @param elsePart the result of the statement of the else part, true when there is none
+     */
+    private void endIf(int ifNode, boolean elsePart) {
+        RecursiveDescentParser p = parser;
+        if (!elsePart) {
+            p.error(ErrorCode.ELSE);
+            ret(false);
+            return;
+        }
+        if (p.ast != null) {
+            p.addLastNode(ifNode);
+        }
+        if (!p.match(TokenKind.ENDIF)) {
+            p.error(ErrorCode.MISSING_ENDIF);
+            ret(false);
+            return;
+        }
+        p.next();
+        if (p.ast != null) {
+            p.close(ifNode);
+            p.lastNode = ifNode;
+        }
+        ret(true);
+    }
+
+    private void whileStatement(int frame) {
+        RecursiveDescentParser p = parser;
+        if (states[frame] == 0) {
+            int whileNode = nodes[frame] = p.ast != null ? p.node(AstKind.WHILE, -1) : -1;
+            p.next();
+            if (!p.match(TokenKind.OPEN_PARENTHESES)) {
+                p.error(ErrorCode.MISSING_OPEN_PARENTHESES);
+                ret(false);
+                return;
+            }
+            p.next();
+            if (!p.booleanExpresion()) {
+                ret(false);
+                return;
+            }
+            if (p.ast != null) {
+                p.ast.addChild(whileNode, p.lastNode);
+            }
+            if (!p.match(TokenKind.CLOSE_PARENTHESE)) {
+                p.error(ErrorCode.MISSING_CLOSE_PARENTHESE);
+                ret(false);
+                return;
+            }
+            p.next();
+            call(frame, 1, BLOCK, -1);
+            return;
+        }
+        if (result && p.ast != null) {
+            p.ast.addChild(nodes[frame], p.lastNode);
+            p.close(nodes[frame]);
+            p.lastNode = nodes[frame];
+        }
+        ret(result);
+    }
+
+    private void assignStatement(int frame) {
+        RecursiveDescentParser p = parser;
+        if (states[frame] == 0) {
+            if (!p.assignTarget()) {
+                p.error(ErrorCode.ASSIGN_NAME);
+                ret(false);
+                return;
+            }
+            nodes[frame] = p.lastNode;
+            call(frame, 1, EXP, -1);
+            return;
+        }
+        if (!result) {
+            p.error(ErrorCode.ASSIGN_EXPRESSION);
+            ret(false);
+            return;
+        }
+        if (p.ast != null) {
+            p.ast.addChild(nodes[frame], p.lastNode);
+            p.close(nodes[frame]);
+            p.lastNode = nodes[frame];
+        }
+        ret(true);
+    }
+
+    private void exp(int frame) {
+        binary(frame, TERM, RecursiveDescentParser.ADD_OPERATORS, ErrorCode.ADD_OPERATION);
+    }
+
+    private void term(int frame) {
+        binary(frame, FACTOR, RecursiveDescentParser.MUL_OPERATORS, ErrorCode.MUL_OPERATION);
+    }
+
+    /**
+     * exp and term:  operand  (  operator  operand  )*
+     */
+    private void binary(int frame, int operand, long operatorKinds, ErrorCode error) {
+        RecursiveDescentParser p = parser;
+        switch (states[frame]) {
+            case 0:
+                call(frame, 1, operand, -1);
+                return;
+            case 1:
+                if (!result) {
+                    ret(false);
+                    return;
+                }
+                break;
+            default:
+                if (!result) {
+                    p.error(error);
+                    ret(false);
+                    return;
+                }
+                if (p.ast != null) {
+                    p.lastNode = p.operator(TokenKind.VALUES[operators[frame]], lefts[frame], p.lastNode);
+                }
+        }
+        if (p.match(operatorKinds)) {
+            operators[frame] = p.tokens.kind(p.tokenPointer).ordinal();
+            lefts[frame] = p.lastNode;
+            p.next();
+            call(frame, 2, operand, -1);
+        } else {
+            ret(true);
+        }
+    }
+
+    private void factor(int frame) {
+        RecursiveDescentParser p = parser;
+        if (states[frame] == 0) {
+            if (p.match(TokenKind.OPEN_PARENTHESES)) {
+                p.next();
+                call(frame, 1, EXP, -1);
+            } else {
+                ret(p.leafFactor());
+            }
+            return;
+        }
+        if (!result) {
+            ret(false);
+        } else if (p.match(TokenKind.CLOSE_PARENTHESE)) {
+            p.next();
+            ret(true);
+        } else {
+            p.error(ErrorCode.FACTOR_NAME);
+            ret(false);
+        }
+    }
+}
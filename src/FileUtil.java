@@ -1,31 +1,127 @@
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 
 
 public class FileUtil{
+
+    // chunk size used when the file has to be decoded
+    private final static int CHUNK_SIZE = 64 * 1024;
+
     /**
-     * read file using buffer and return it as string
+     * read the whole file as UTF-8 and return it as string
      * @param file
      * @return
      * @throws IOException
      */
     public static String readFile(File file) throws IOException
     {
-        FileReader fileReader = null;
-        try {
-            fileReader = new FileReader(file);
-            BufferedReader BufferReader = new BufferedReader(fileReader);
-            char[] chars = new char[(int) file.length()];
-            BufferReader.read(chars);
-            BufferReader.close();
-            return new String(chars);
+        return mapFile(file, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * map the file as UTF-8, see {@link #mapFile(File, Charset)}
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static CharSequence mapFile(File file) throws IOException
+    {
+        return mapFile(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * memory map the file and return a char view over it.
+     * when the file is pure ASCII (or the charset is ISO-8859-1) the view reads the mapped bytes directly,
+     * so the content never gets copied on the heap. otherwise the mapped bytes are decoded chunk by chunk
+     * into one char buffer
+     * @param file
+     * @param charset
+     * @return
+     * @throws IOException
+     */
+    public static CharSequence mapFile(File file, Charset charset) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be parsed (" + size + " bytes)");
+            }
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return asChars(bytes, charset);
         }
-        finally {
-            if (fileReader != null) {
-                fileReader.close();
+    }
+
+    /**
+     * a char view over encoded bytes, the bytes are read directly when they are ASCII and decoded otherwise
+     * @param bytes
+     * @param charset
+     * @return
+     * @throws CharacterCodingException
+     */
+    public static CharSequence asChars(ByteBuffer bytes, Charset charset) throws CharacterCodingException
+    {
+        if (charset.equals(StandardCharsets.ISO_8859_1) || (isAsciiCompatible(charset) && isAscii(bytes))) {
+            return new AsciiCharSequence(bytes);
+        }
+        return decode(bytes, charset);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * check that no byte has its high bit set, a vector or 8 bytes at a time, see {@link AsciiScanner}
+     * @param bytes
+     * @return
+     */
+    static boolean isAscii(ByteBuffer bytes)
+    {
+        return AsciiScanner.INSTANCE.isAscii(bytes, 0, bytes.limit());
+    }
+
+    /**
+     * decode the bytes in fixed size chunks, malformed input is reported instead of silently replaced
+     * @param bytes
+     * @param charset
+     * @return
+     * @throws CharacterCodingException
+     */
+    private static CharSequence decode(ByteBuffer bytes, Charset charset) throws CharacterCodingException
+    {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.allocate((int) Math.min(Integer.MAX_VALUE,
+                (long) Math.ceil(bytes.limit() * (double) decoder.maxCharsPerByte())));
+        ByteBuffer input = bytes.duplicate();
+        int limit = input.limit();
+        while (input.position() < limit) {
+            input.limit(Math.min(limit, input.position() + CHUNK_SIZE));
+            boolean last = input.limit() == limit;
+            CoderResult result = decoder.decode(input, chars, last);
+            if (result.isError()) {
+                result.throwException();
             }
+            // an incomplete multi byte char at the end of the chunk stays in the input for the next round
+            input.limit(limit);
+        }
+        CoderResult result = decoder.flush(chars);
+        if (result.isError()) {
+            result.throwException();
         }
+        chars.flip();
+        return chars;
     }
 }
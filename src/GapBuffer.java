@@ -0,0 +1,106 @@
+/**
+ * the text of a code that is edited again and again, the chars are kept in an array with a gap at the place
+ * of the last edit. an edit moves the gap to its offset, which only copies the chars between the two places,
+ * so edits close to each other cost about as much as their own text and not as much as the whole code
+ */
+final class GapBuffer implements CharSequence {
+
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    GapBuffer(CharSequence text) {
+        int length = text.length();
+        chars = new char[length + spare(length)];
+        text.toString().getChars(0, length, chars, 0);
+        gapStart = length;
+        gapEnd = chars.length;
+    }
+
+    /**
+     * replace a span of the text
+     *
+     * @param offset        where the span starts
+     * @param deletedLength the number of chars removed from offset on
+     * @param inserted      the text inserted at offset
+     */
+    void replace(int offset, int deletedLength, CharSequence inserted) {
+        moveGap(offset);
+        gapEnd += deletedLength;
+        int count = inserted.length();
+        if (count > gapEnd - gapStart) {
+            grow(count);
+        }
+        for (int i = 0; i < count; i++) {
+            chars[gapStart++] = inserted.charAt(i);
+        }
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int count = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (offset > gapStart) {
+            int count = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    /**
+     * a larger array with a gap of at least the given size
+     *
+     * @param gap
+     */
+    private void grow(int gap) {
+        int length = length();
+        int after = chars.length - gapEnd;
+        char[] grown = new char[length + gap + spare(length + gap)];
+        System.arraycopy(chars, 0, grown, 0, gapStart);
+        System.arraycopy(chars, gapEnd, grown, grown.length - after, after);
+        gapEnd = grown.length - after;
+        chars = grown;
+    }
+
+    private static int spare(int length) {
+        return Math.max(64, length >> 4);
+    }
+
+    @Override
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < gapStart) {
+            return chars[index];
+        }
+        if (index >= length()) {
+            throw new IndexOutOfBoundsException("index " + index + " of " + length());
+        }
+        return chars[index + gapEnd - gapStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length()) {
+            throw new IndexOutOfBoundsException("span " + start + "-" + end + " of " + length());
+        }
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            builder.append(charAt(i));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(length());
+        builder.append(chars, 0, gapStart).append(chars, gapEnd, chars.length - gapEnd);
+        return builder.toString();
+    }
+}
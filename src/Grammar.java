@@ -0,0 +1,264 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a context free grammar written as data, with the FIRST and FOLLOW sets of its non-terminals and the LL(1)
+ * parse table generated from them, see {@link TableDrivenEngine}.
+ *
+ * an alternative is a list of symbols separated by spaces: a lower case name is a non-terminal, an upper case
+ * name is a {@link TokenKind}, #NAME is an action run when the parser reaches it and @ is the empty
+ * alternative. the first rule is the start of the grammar. a grammar that isn't LL(1) is refused with the
+ * non-terminal, the token and the two alternatives in conflict
+ */
+final class Grammar {
+
+    // the symbols of an alternative: the token kinds, then the non-terminals, then the actions
+    final static int NON_TERMINAL = 64;
+    final static int ACTION = 1024;
+
+    private final static int TOKEN_KINDS = TokenKind.VALUES.length;
+
+    private final Enum<?>[] actions;
+    private final Map<String, Integer> nonTerminalIds = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<ErrorCode> errorList = new ArrayList<>();
+    private final List<String[]> alternativeTexts = new ArrayList<>();
+
+    // filled by build()
+    String[] nonTerminals;
+    // the error of a non-terminal that has no alternative for the next token
+    ErrorCode[] errors;
+    // the symbols of every alternative and the non-terminal it belongs to
+    short[][] alternatives;
+    int[] lefts;
+    // by non-terminal, as masks of token kinds
+    boolean[] nullable;
+    long[] first;
+    long[] follow;
+    // the alternative to take for a non-terminal and the next token kind, -1 for an error
+    short[][] table;
+
+    /**
+     * @param actions the actions the alternatives can name
+     */
+    Grammar(Enum<?>[] actions) {
+        this.actions = actions;
+    }
+
+    /**
+     * @param name        the non-terminal
+     * @param error       reported when the next token starts none of the alternatives
+     * @param alternatives
+     * @return Grammar this grammar
+     */
+    Grammar rule(String name, ErrorCode error, String... alternatives) {
+        if (nonTerminalIds.containsKey(name)) {
+            throw new IllegalArgumentException("the non-terminal " + name + " has two rules");
+        }
+        nonTerminalIds.put(name, names.size());
+        names.add(name);
+        errorList.add(error);
+        alternativeTexts.add(alternatives);
+        return this;
+    }
+
+    /**
+     * resolve the symbols, compute the FIRST and FOLLOW sets and generate the table
+     *
+     * @return Grammar this grammar
+     * @throws IllegalStateException when the grammar isn't LL(1)
+     */
+    Grammar build() {
+        int count = names.size();
+        nonTerminals = names.toArray(new String[0]);
+        errors = errorList.toArray(new ErrorCode[0]);
+        List<short[]> symbols = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            for (String text : alternativeTexts.get(i)) {
+                symbols.add(resolve(nonTerminals[i], text));
+                owners.add(i);
+            }
+        }
+        alternatives = symbols.toArray(new short[0][]);
+        lefts = owners.stream().mapToInt(Integer::intValue).toArray();
+
+        nullable = new boolean[count];
+        first = new long[count];
+        follow = new long[count];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < alternatives.length; i++) {
+                int left = lefts[i];
+                long firstOfAlternative = firstOf(alternatives[i], 0);
+                if ((first[left] | firstOfAlternative) != first[left]) {
+                    first[left] |= firstOfAlternative;
+                    changed = true;
+                }
+                if (!nullable[left] && nullableFrom(alternatives[i], 0)) {
+                    nullable[left] = true;
+                    changed = true;
+                }
+            }
+        }
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < alternatives.length; i++) {
+                short[] alternative = alternatives[i];
+                for (int j = 0; j < alternative.length; j++) {
+                    int symbol = alternative[j];
+                    if (symbol < NON_TERMINAL || symbol >= ACTION) {
+                        continue;
+                    }
+                    int nonTerminal = symbol - NON_TERMINAL;
+                    long after = firstOf(alternative, j + 1);
+                    if (nullableFrom(alternative, j + 1)) {
+                        after |= follow[lefts[i]];
+                    }
+                    if ((follow[nonTerminal] | after) != follow[nonTerminal]) {
+                        follow[nonTerminal] |= after;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        table = new short[count][TOKEN_KINDS];
+        for (short[] row : table) {
+            Arrays.fill(row, (short) -1);
+        }
+        for (int i = 0; i < alternatives.length; i++) {
+            long lookahead = firstOf(alternatives[i], 0);
+            if (nullableFrom(alternatives[i], 0)) {
+                lookahead |= follow[lefts[i]];
+            }
+            for (int kind = 0; kind < TOKEN_KINDS; kind++) {
+                if ((lookahead & 1L << kind) == 0) {
+                    continue;
+                }
+                short[] row = table[lefts[i]];
+                if (row[kind] >= 0) {
+                    throw new IllegalStateException("the grammar isn't LL(1): " + nonTerminals[lefts[i]] + " on "
+                            + TokenKind.VALUES[kind] + " can be " + describe(row[kind]) + " or " + describe(i));
+                }
+                row[kind] = (short) i;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @param alternative
+     * @return String the symbols of an alternative as they were written
+     */
+    String describe(int alternative) {
+        StringBuilder text = new StringBuilder();
+        for (short symbol : alternatives[alternative]) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            if (symbol < NON_TERMINAL) {
+                text.append(TokenKind.VALUES[symbol]);
+            } else if (symbol < ACTION) {
+                text.append(nonTerminals[symbol - NON_TERMINAL]);
+            } else {
+                text.append('#').append(actions[symbol - ACTION].name());
+            }
+        }
+        return text.length() == 0 ? "@" : text.toString();
+    }
+
+    /**
+     * the rules with the FIRST and FOLLOW sets of every non-terminal, to check a change of the grammar
+     *
+     * @return String
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < nonTerminals.length; i++) {
+            text.append(nonTerminals[i]).append(" =");
+            for (int j = 0; j < alternatives.length; j++) {
+                if (lefts[j] == i) {
+                    text.append(' ').append(describe(j)).append(" |");
+                }
+            }
+            text.setLength(text.length() - 2);
+            text.append(System.lineSeparator()).append("    first ").append(TokenKind.kindsOf(first[i]))
+                    .append(nullable[i] ? " and empty" : "")
+                    .append(System.lineSeparator()).append("    follow ").append(TokenKind.kindsOf(follow[i]))
+                    .append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    private short[] resolve(String rule, String text) {
+        String[] words = text.trim().split("\\s+");
+        if (words.length == 1 && words[0].equals("@")) {
+            return new short[0];
+        }
+        short[] symbols = new short[words.length];
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (word.startsWith("#")) {
+                symbols[i] = (short) (ACTION + action(rule, word.substring(1)));
+            } else if (Character.isLowerCase(word.charAt(0))) {
+                Integer id = nonTerminalIds.get(word);
+                if (id == null) {
+                    throw new IllegalArgumentException("the rule " + rule + " uses the unknown non-terminal " + word);
+                }
+                symbols[i] = (short) (NON_TERMINAL + id);
+            } else {
+                symbols[i] = (short) TokenKind.valueOf(word).ordinal();
+            }
+        }
+        return symbols;
+    }
+
+    private int action(String rule, String name) {
+        for (Enum<?> action : actions) {
+            if (action.name().equals(name)) {
+                return action.ordinal();
+            }
+        }
+        throw new IllegalArgumentException("the rule " + rule + " uses the unknown action " + name);
+    }
+
+    /**
+     * @return long the token kinds the symbols from start on can begin with
+     */
+    private long firstOf(short[] symbols, int start) {
+        long kinds = 0;
+        for (int i = start; i < symbols.length; i++) {
+            int symbol = symbols[i];
+            if (symbol < NON_TERMINAL) {
+                return kinds | 1L << symbol;
+            }
+            if (symbol < ACTION) {
+                kinds |= first[symbol - NON_TERMINAL];
+                if (!nullable[symbol - NON_TERMINAL]) {
+                    return kinds;
+                }
+            }
+        }
+        return kinds;
+    }
+
+    /**
+     * @return boolean true when the symbols from start on can match no token at all
+     */
+    private boolean nullableFrom(short[] symbols, int start) {
+        for (int i = start; i < symbols.length; i++) {
+            int symbol = symbols[i];
+            if (symbol < NON_TERMINAL || symbol < ACTION && !nullable[symbol - NON_TERMINAL]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * re-validate a program after small edits without parsing all of it again, for editors that validate on
+ * every keystroke. the code is kept in a {@link GapBuffer} and the last valid parse with its tree: an edit
+ * inside a top level statement of the main block parses only that statement again, from its first char up to
+ * the first char of the next statement (the same boundaries the chunks of a parallel parse have), and its new
+ * statements replace it in the kept tree in place. an edit in the declarations, before the first statement or
+ * on the first char of a statement, an invalid last parse, or statements that aren't valid on their own fall
+ * back to a full parse, so the result is always the same as a fresh {@link RecursiveDescentParser} parse of
+ * the edited code with its tree built.
+ *
+ * the tree of a result is the one the next edits change, and the replaced statements stay in it unlinked
+ * until it holds twice the nodes of the last full parse, then the next edit parses the whole code again
+ */
+public class IncrementalParser {
+
+    private final RecursiveDescentParser parser = new RecursiveDescentParser().setBuildAst(true);
+    // the tokens of the replaced statements before the edit, for the token count of the result
+    private final TokenStream replacedTokens = new TokenStream("", 0);
+
+    private final GapBuffer code;
+    private ParseResult result;
+    // the nodes of the tree of the last full parse
+    private int fullParseNodes = 0;
+
+    private int incrementalCount = 0;
+
+    public IncrementalParser(CharSequence code) {
+        this.code = new GapBuffer(code);
+        fullParse();
+    }
+
+    /**
+     * @return String a copy of the edited code
+     */
+    public String getCode() {
+        return code.toString();
+    }
+
+    /**
+     * @return ParseResult the result of the last parse, the same as a fresh parse of {@link #getCode}
+     */
+    public ParseResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return int how many edits were validated by reparsing a single statement
+     */
+    public int getIncrementalCount() {
+        return incrementalCount;
+    }
+
+    /**
+     * apply an edit to the code and validate the edited code
+     *
+     * @param offset        where the edit starts
+     * @param deletedLength the number of chars removed from offset on
+     * @param inserted      the text inserted at offset
+     * @return ParseResult
+     */
+    public ParseResult edit(int offset, int deletedLength, CharSequence inserted) {
+        if (offset < 0 || deletedLength < 0 || offset + deletedLength > code.length()) {
+            throw new IndexOutOfBoundsException("edit " + offset + "+" + deletedLength + " of " + code.length());
+        }
+        long startTime = System.nanoTime();
+        int editEnd = offset + deletedLength;
+        int delta = inserted.length() - deletedLength;
+        AstArena tree = result.getAst();
+        int block = tree != null && tree.size() < 2 * fullParseNodes ? mainBlock(tree) : -1;
+        int previous = -1;
+        int statement = block >= 0 ? tree.firstChild(block) : -1;
+        // the statement whose first char is before the edit and whose part of the block ends after it
+        while (statement >= 0 && tree.start(statement) < offset) {
+            int next = tree.nextSibling(statement);
+            int to = next >= 0 ? tree.start(next) : tree.end(block) - 1;
+            // an edit just before the next statement could join its first token to the text of the edit
+            if (next >= 0 ? editEnd < to : editEnd <= to) {
+                int from = tree.start(statement);
+                int oldTokens = new Lexer(code, from, to).tokenize(replacedTokens).size();
+                code.replace(offset, deletedLength, inserted);
+                AstArena replacement = parser.reparseStatements(code, from, to + delta, next < 0);
+                if (replacement == null) {
+                    return fullParse();
+                }
+                tree.replaceChild(block, previous, statement, replacement, editEnd, delta);
+                incrementalCount++;
+                result = new ParseResult(true, Diagnostics.EMPTY, code.length(),
+                        result.getTokenCount() + parser.tokens.size() - oldTokens, result.getNameCount(),
+                        System.nanoTime() - startTime, tree, result.getSymbols());
+                return result;
+            }
+            previous = statement;
+            statement = next;
+        }
+        code.replace(offset, deletedLength, inserted);
+        return fullParse();
+    }
+
+    private ParseResult fullParse() {
+        result = parser.reset(code.toString()).parse();
+        fullParseNodes = result.getAst() != null ? result.getAst().size() : 0;
+        return result;
+    }
+
+    /**
+     * @param tree
+     * @return int the BLOCK of the main block, the last child of the program
+     */
+    private static int mainBlock(AstArena tree) {
+        int block = -1;
+        for (int child = tree.firstChild(tree.root()); child >= 0; child = tree.nextSibling(child)) {
+            block = child;
+        }
+        return block >= 0 && tree.kind(block) == AstKind.BLOCK ? block : -1;
+    }
+}
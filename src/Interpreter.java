@@ -0,0 +1,175 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * run {@link Bytecode} in a single dispatch loop over primitive register files, nothing is allocated while
+ * the program runs. int arithmetic wraps around like Java ints and an int division by zero throws
+ * ArithmeticException
+ *
+ * usage:  Interpreter file   runs the program with the standard input and output
+ */
+public final class Interpreter {
+
+    private Interpreter() {
+    }
+
+    /**
+     * parse, check and lower a program
+     *
+     * @param code
+     * @return Bytecode
+     * @throws IllegalArgumentException when the program isn't valid, with its first error
+     */
+    public static Bytecode compile(CharSequence code) {
+        ParseResult result = new RecursiveDescentParser(code).setBuildAst(true).parse();
+        if (!result.isValid()) {
+            throw new IllegalArgumentException(result.getFirstError());
+        }
+        return BytecodeCompiler.compile(result, code);
+    }
+
+    /**
+     * run a program until its end
+     *
+     * @param program
+     * @param io
+     * @throws IOException when the io fails
+     */
+    public static void run(Bytecode program, ProgramIO io) throws IOException {
+        int[] code = program.code;
+        int[] i = program.ints.clone();
+        float[] f = program.floats.clone();
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case Bytecode.HALT:
+                    return;
+                case Bytecode.IMOV:
+                    i[code[pc + 1]] = i[code[pc + 2]];
+                    break;
+                case Bytecode.FMOV:
+                    f[code[pc + 1]] = f[code[pc + 2]];
+                    break;
+                case Bytecode.I2F:
+                    f[code[pc + 1]] = i[code[pc + 2]];
+                    break;
+                case Bytecode.F2I:
+                    i[code[pc + 1]] = (int) f[code[pc + 2]];
+                    break;
+                case Bytecode.IADD:
+                    i[code[pc + 1]] = i[code[pc + 2]] + i[code[pc + 3]];
+                    break;
+                case Bytecode.ISUB:
+                    i[code[pc + 1]] = i[code[pc + 2]] - i[code[pc + 3]];
+                    break;
+                case Bytecode.IMUL:
+                    i[code[pc + 1]] = i[code[pc + 2]] * i[code[pc + 3]];
+                    break;
+                case Bytecode.IDIV:
+                    i[code[pc + 1]] = i[code[pc + 2]] / i[code[pc + 3]];
+                    break;
+                case Bytecode.IREM:
+                    i[code[pc + 1]] = i[code[pc + 2]] % i[code[pc + 3]];
+                    break;
+                case Bytecode.FADD:
+                    f[code[pc + 1]] = f[code[pc + 2]] + f[code[pc + 3]];
+                    break;
+                case Bytecode.FSUB:
+                    f[code[pc + 1]] = f[code[pc + 2]] - f[code[pc + 3]];
+                    break;
+                case Bytecode.FMUL:
+                    f[code[pc + 1]] = f[code[pc + 2]] * f[code[pc + 3]];
+                    break;
+                case Bytecode.FDIV:
+                    f[code[pc + 1]] = f[code[pc + 2]] / f[code[pc + 3]];
+                    break;
+                case Bytecode.FREM:
+                    f[code[pc + 1]] = f[code[pc + 2]] % f[code[pc + 3]];
+                    break;
+                case Bytecode.JMP:
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JIEQ:
+                    if (i[code[pc + 2]] == i[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JINE:
+                    if (i[code[pc + 2]] != i[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JILT:
+                    if (i[code[pc + 2]] < i[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JILE:
+                    if (i[code[pc + 2]] <= i[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JIGT:
+                    if (i[code[pc + 2]] > i[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JIGE:
+                    if (i[code[pc + 2]] >= i[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JFEQ:
+                    if (f[code[pc + 2]] == f[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JFNE:
+                    if (f[code[pc + 2]] != f[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JFLT:
+                    if (f[code[pc + 2]] < f[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JFLE:
+                    if (f[code[pc + 2]] <= f[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JFGT:
+                    if (f[code[pc + 2]] > f[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.JFGE:
+                    if (f[code[pc + 2]] >= f[code[pc + 3]]) break;
+                    pc = code[pc + 1];
+                    continue;
+                case Bytecode.IN_INT:
+                    i[code[pc + 1]] = io.readInt();
+                    break;
+                case Bytecode.IN_FLOAT:
+                    f[code[pc + 1]] = io.readFloat();
+                    break;
+                case Bytecode.OUT_INT:
+                    io.writeInt(i[code[pc + 1]]);
+                    break;
+                case Bytecode.OUT_FLOAT:
+                    io.writeFloat(f[code[pc + 1]]);
+                    break;
+                default:
+                    throw new IllegalStateException("bad op " + code[pc] + " at " + pc / 4);
+            }
+            pc += 4;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("usage: Interpreter file");
+            System.exit(2);
+        }
+        try {
+            CharSequence code = FileUtil.mapFile(new File(args[0]));
+            run(compile(code), ProgramIO.of(System.in, System.out));
+        } catch (IllegalArgumentException e) {
+            System.out.println("invalid syntax" + System.lineSeparator() + e.getMessage());
+            System.exit(1);
+        } catch (IOException | ArithmeticException e) {
+            System.out.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+}
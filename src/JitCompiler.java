@@ -0,0 +1,500 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * compile valid programs to JVM classes, so HotSpot compiles a hot program to machine code like any other
+ * java method. the {@link Bytecode} of a program is translated op by op into the run method of a hidden
+ * class: the registers of the vars and the temporaries become int and float locals, the constant registers
+ * become constants of the class and the jumps become branches.
+ *
+ * compiled programs are cached by the hash of their source for as long as they are referenced. a hidden
+ * class isn't held by its class loader, so a program nobody uses any more is unloaded with its class.
+ * a program too big for a single JVM method runs on the {@link Interpreter} instead
+ */
+public final class JitCompiler {
+
+    private final static int MAX_CODE = 65535;
+    private final static int MAX_LOCALS = 65535;
+    private final static int MAX_CONSTANTS = 65535;
+
+    private final static String CLASS_NAME = "JitProgram";
+    private final static String IO_NAME = "ProgramIO";
+
+    // the JVM instructions used by the translation
+    private final static int ICONST_0 = 0x03;
+    private final static int FCONST_0 = 0x0b;
+    private final static int FCONST_1 = 0x0c;
+    private final static int FCONST_2 = 0x0d;
+    private final static int BIPUSH = 0x10;
+    private final static int SIPUSH = 0x11;
+    private final static int LDC = 0x12;
+    private final static int LDC_W = 0x13;
+    private final static int ILOAD = 0x15;
+    private final static int FLOAD = 0x17;
+    private final static int ALOAD_0 = 0x2a;
+    private final static int ALOAD_1 = 0x2b;
+    private final static int ISTORE = 0x36;
+    private final static int FSTORE = 0x38;
+    private final static int IADD = 0x60;
+    private final static int FADD = 0x62;
+    private final static int I2F = 0x86;
+    private final static int F2I = 0x8b;
+    private final static int RETURN = 0xb1;
+    private final static int INVOKESPECIAL = 0xb7;
+    private final static int INVOKEINTERFACE = 0xb9;
+    private final static int WIDE = 0xc4;
+    private final static int GOTO_W = 0xc8;
+
+    // by the relation of a jump, in the order of the relational AstKinds
+    private final static int[] IF_ICMP = {0x9f, 0xa0, 0xa1, 0xa4, 0xa3, 0xa2};
+    private final static int[] IF = {0x99, 0x9a, 0x9b, 0x9e, 0x9d, 0x9c};
+    // fcmpg for < and <= and fcmpl for the others, so a NaN operand makes every relation but != false
+    private final static int[] FCMP = {0x95, 0x95, 0x96, 0x96, 0x95, 0x95};
+
+    // the size of a branch over the goto_w that follows it
+    private final static int SKIP_JUMP = 8;
+
+    private final static MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final static ConcurrentHashMap<Long, CachedProgram> CACHE = new ConcurrentHashMap<>();
+    private final static ReferenceQueue<CompiledProgram> UNUSED = new ReferenceQueue<>();
+
+    private final Bytecode program;
+    // the local slot of every register, -1 for the constant registers
+    private final int[] intSlots;
+    private final int[] floatSlots;
+    private int intLocals = 0;
+    private int floatLocals = 0;
+
+    private final Bytes pool = new Bytes();
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final Bytes code = new Bytes();
+
+    private JitCompiler(Bytecode program) {
+        this.program = program;
+        int symbolCount = program.getSymbols().size();
+        intSlots = new int[program.intRegisters()];
+        floatSlots = new int[program.floatRegisters()];
+        Arrays.fill(intSlots, -1);
+        Arrays.fill(floatSlots, -1);
+        // slot 0 is the program and slot 1 the io
+        for (int register = 0; register < intSlots.length; register++) {
+            if (register < symbolCount || register >= program.intConstantEnd) {
+                intSlots[register] = 2 + intLocals++;
+            }
+        }
+        for (int register = 0; register < floatSlots.length; register++) {
+            if (register < symbolCount || register >= program.floatConstantEnd) {
+                floatSlots[register] = 2 + intLocals + floatLocals++;
+            }
+        }
+    }
+
+    /**
+     * compile a program, or return the program compiled from the same source before while it is still used
+     *
+     * @param code
+     * @return CompiledProgram
+     * @throws IllegalArgumentException when the program isn't valid, with its first error
+     */
+    public static CompiledProgram compile(CharSequence code) {
+        purge();
+        String source = code.toString();
+        long hash = ParseCache.hash(source, 0);
+        CachedProgram cached = CACHE.get(hash);
+        CompiledProgram program = cached != null && cached.source.equals(source) ? cached.get() : null;
+        if (program == null) {
+            program = define(Interpreter.compile(source));
+            CACHE.put(hash, new CachedProgram(hash, source, program));
+        }
+        return program;
+    }
+
+    /**
+     * @return int the number of compiled programs in the cache, the unused ones are dropped by the collector
+     */
+    public static int cacheSize() {
+        purge();
+        return CACHE.size();
+    }
+
+    /**
+     * load the class of a program, without the cache
+     *
+     * @param program
+     * @return CompiledProgram
+     */
+    static CompiledProgram define(Bytecode program) {
+        byte[] classFile = new JitCompiler(program).classFile();
+        if (classFile == null) {
+            return io -> Interpreter.run(program, io);
+        }
+        try {
+            Class<?> type = LOOKUP.defineHiddenClass(classFile, true).lookupClass();
+            return (CompiledProgram) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("the class of the program can't be loaded", e);
+        }
+    }
+
+    private static void purge() {
+        for (Reference<?> reference = UNUSED.poll(); reference != null; reference = UNUSED.poll()) {
+            CachedProgram cached = (CachedProgram) reference;
+            CACHE.remove(cached.hash, cached);
+        }
+    }
+
+    /**
+     * @return byte[] the class file, null when the program doesn't fit in a single method
+     */
+    private byte[] classFile() {
+        if (2 + intLocals + floatLocals > MAX_LOCALS) {
+            return null;
+        }
+        int[] ir = program.code;
+        int count = ir.length / 4;
+        int[] offsets = new int[count];
+        int[] jumps = new int[count];
+        boolean[] framed = new boolean[count];
+        Arrays.fill(jumps, -1);
+
+        // every local starts at 0 like the registers of the interpreter
+        for (int slot : intSlots) {
+            if (slot >= 0) {
+                code.u1(ICONST_0);
+                local(ISTORE, slot);
+            }
+        }
+        for (int slot : floatSlots) {
+            if (slot >= 0) {
+                code.u1(FCONST_0);
+                local(FSTORE, slot);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int pc = i * 4;
+            int op = ir[pc];
+            int a = ir[pc + 1];
+            int b = ir[pc + 2];
+            int c = ir[pc + 3];
+            offsets[i] = code.length;
+            if (op == Bytecode.HALT) {
+                code.u1(RETURN);
+            } else if (op == Bytecode.IMOV || op == Bytecode.FMOV) {
+                boolean isFloat = op == Bytecode.FMOV;
+                load(b, isFloat);
+                store(a, isFloat);
+            } else if (op == Bytecode.I2F) {
+                load(b, false);
+                code.u1(I2F);
+                store(a, true);
+            } else if (op == Bytecode.F2I) {
+                load(b, true);
+                code.u1(F2I);
+                store(a, false);
+            } else if (op >= Bytecode.IADD && op <= Bytecode.IREM) {
+                load(b, false);
+                load(c, false);
+                code.u1(IADD + (op - Bytecode.IADD) * 4);
+                store(a, false);
+            } else if (op >= Bytecode.FADD && op <= Bytecode.FREM) {
+                load(b, true);
+                load(c, true);
+                code.u1(FADD + (op - Bytecode.FADD) * 4);
+                store(a, true);
+            } else if (op == Bytecode.JMP) {
+                jumps[i] = jump();
+            } else if (op >= Bytecode.JIEQ && op <= Bytecode.JIGE) {
+                load(b, false);
+                load(c, false);
+                code.u1(IF_ICMP[op - Bytecode.JIEQ]).u2(SKIP_JUMP);
+                jumps[i] = jump();
+            } else if (op >= Bytecode.JFEQ && op <= Bytecode.JFGE) {
+                load(b, true);
+                load(c, true);
+                code.u1(FCMP[op - Bytecode.JFEQ]).u1(IF[op - Bytecode.JFEQ]).u2(SKIP_JUMP);
+                jumps[i] = jump();
+            } else if (op == Bytecode.IN_INT || op == Bytecode.IN_FLOAT) {
+                boolean isFloat = op == Bytecode.IN_FLOAT;
+                code.u1(ALOAD_1);
+                invokeIo(isFloat ? "readFloat" : "readInt", isFloat ? "()F" : "()I", 1);
+                store(a, isFloat);
+            } else {
+                boolean isFloat = op == Bytecode.OUT_FLOAT;
+                code.u1(ALOAD_1);
+                load(a, isFloat);
+                invokeIo(isFloat ? "writeFloat" : "writeInt", isFloat ? "(F)V" : "(I)V", 2);
+            }
+            // the instruction after a jump or the end has no fall through type state
+            if ((op == Bytecode.HALT || jumps[i] >= 0) && i + 1 < count) {
+                framed[i + 1] = true;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (jumps[i] >= 0) {
+                int target = ir[i * 4 + 1] / 4;
+                framed[target] = true;
+                code.u4(jumps[i] + 1, offsets[target] - jumps[i]);
+            }
+        }
+        if (code.length > MAX_CODE) {
+            return null;
+        }
+
+        int thisClass = classRef(CLASS_NAME);
+        int objectClass = classRef("java/lang/Object");
+        int programInterface = classRef("CompiledProgram");
+        int ioClass = classRef(IO_NAME);
+        int objectInit = methodRef(10, "java/lang/Object", "<init>", "()V");
+        int initName = utf8("<init>");
+        int initType = utf8("()V");
+        int runName = utf8("run");
+        int runType = utf8("(L" + IO_NAME + ";)V");
+        int codeName = utf8("Code");
+        int framesName = utf8("StackMapTable");
+        if (poolCount > MAX_CONSTANTS) {
+            return null;
+        }
+
+        // all the frames have the same locals and an empty stack, only the first one lists them
+        Bytes frames = new Bytes();
+        int frameCount = 0;
+        int last = -1;
+        for (int i = 0; i < count; i++) {
+            if (framed[i]) {
+                int offset = offsets[i];
+                if (last < 0) {
+                    frames.u1(255).u2(offset).u2(2 + intLocals + floatLocals).u1(7).u2(thisClass).u1(7).u2(ioClass);
+                    for (int local = 0; local < intLocals; local++) {
+                        frames.u1(1);
+                    }
+                    for (int local = 0; local < floatLocals; local++) {
+                        frames.u1(2);
+                    }
+                    frames.u2(0);
+                } else if (offset - last - 1 < 64) {
+                    frames.u1(offset - last - 1);
+                } else {
+                    frames.u1(251).u2(offset - last - 1);
+                }
+                last = offset;
+                frameCount++;
+            }
+        }
+
+        Bytes out = new Bytes();
+        // a public final class with the ACC_SUPER flag, version 52
+        out.u4(0xCAFEBABE).u2(0).u2(52).u2(poolCount).put(pool);
+        out.u2(0x0031).u2(thisClass).u2(objectClass).u2(1).u2(programInterface).u2(0).u2(2);
+        // the public constructor calls Object's
+        out.u2(0x0001).u2(initName).u2(initType).u2(1);
+        out.u2(codeName).u4(17).u2(1).u2(1).u4(5).u1(ALOAD_0).u1(INVOKESPECIAL).u2(objectInit).u1(RETURN)
+                .u2(0).u2(0);
+        // public void run(ProgramIO io)
+        out.u2(0x0001).u2(runName).u2(runType).u2(1);
+        int framesLength = frameCount > 0 ? 8 + frames.length : 0;
+        out.u2(codeName).u4(12 + code.length + framesLength).u2(2).u2(2 + intLocals + floatLocals)
+                .u4(code.length).put(code).u2(0).u2(frameCount > 0 ? 1 : 0);
+        if (frameCount > 0) {
+            out.u2(framesName).u4(2 + frames.length).u2(frameCount).put(frames);
+        }
+        out.u2(0);
+        return Arrays.copyOf(out.data, out.length);
+    }
+
+    private void load(int register, boolean isFloat) {
+        int slot = isFloat ? floatSlots[register] : intSlots[register];
+        if (slot >= 0) {
+            local(isFloat ? FLOAD : ILOAD, slot);
+        } else if (isFloat) {
+            pushFloat(program.floats[register]);
+        } else {
+            pushInt(program.ints[register]);
+        }
+    }
+
+    private void store(int register, boolean isFloat) {
+        local(isFloat ? FSTORE : ISTORE, isFloat ? floatSlots[register] : intSlots[register]);
+    }
+
+    private void local(int op, int slot) {
+        if (slot <= 3) {
+            code.u1(op < ISTORE ? 0x1a + (op - ILOAD) * 4 + slot : 0x3b + (op - ISTORE) * 4 + slot);
+        } else if (slot < 256) {
+            code.u1(op).u1(slot);
+        } else {
+            code.u1(WIDE).u1(op).u2(slot);
+        }
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            code.u1(ICONST_0 + value);
+        } else if (value == (byte) value) {
+            code.u1(BIPUSH).u1(value);
+        } else if (value == (short) value) {
+            code.u1(SIPUSH).u2(value);
+        } else {
+            ldc(constant(3, Integer.toString(value), value));
+        }
+    }
+
+    private void pushFloat(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        if (bits == 0) {
+            code.u1(FCONST_0);
+        } else if (value == 1f) {
+            code.u1(FCONST_1);
+        } else if (value == 2f) {
+            code.u1(FCONST_2);
+        } else {
+            ldc(constant(4, Integer.toString(bits), bits));
+        }
+    }
+
+    private void ldc(int index) {
+        if (index < 256) {
+            code.u1(LDC).u1(index);
+        } else {
+            code.u1(LDC_W).u2(index);
+        }
+    }
+
+    /**
+     * @return int the position of the goto_w, its offset is patched when all the targets are known
+     */
+    private int jump() {
+        int position = code.length;
+        code.u1(GOTO_W).u4(0);
+        return position;
+    }
+
+    private void invokeIo(String name, String descriptor, int argumentSlots) {
+        code.u1(INVOKEINTERFACE).u2(methodRef(11, IO_NAME, name, descriptor)).u1(argumentSlots).u1(0);
+    }
+
+    private int utf8(String text) {
+        Integer index = poolIndex.get("1" + text);
+        if (index != null) {
+            return index;
+        }
+        // the names are ascii, so the modified utf8 of the class file is one byte per char
+        pool.u1(1).u2(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            pool.u1(text.charAt(i));
+        }
+        return added("1" + text);
+    }
+
+    private int classRef(String name) {
+        Integer index = poolIndex.get("7" + name);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        pool.u1(7).u2(nameIndex);
+        return added("7" + name);
+    }
+
+    /**
+     * @param tag 10 for a class method, 11 for an interface method
+     */
+    private int methodRef(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + '.' + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        pool.u1(tag).u2(ownerIndex).u2(nameAndType);
+        return added(key);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        Integer index = poolIndex.get("12" + name + descriptor);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        pool.u1(12).u2(nameIndex).u2(descriptorIndex);
+        return added("12" + name + descriptor);
+    }
+
+    /**
+     * @param tag 3 for an int, 4 for the bits of a float
+     */
+    private int constant(int tag, String value, int bits) {
+        Integer index = poolIndex.get(tag + value);
+        if (index != null) {
+            return index;
+        }
+        pool.u1(tag).u4(bits);
+        return added(tag + value);
+    }
+
+    private int added(String key) {
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    private final static class CachedProgram extends WeakReference<CompiledProgram> {
+
+        final long hash;
+        final String source;
+
+        CachedProgram(long hash, String source, CompiledProgram program) {
+            super(program, UNUSED);
+            this.hash = hash;
+            this.source = source;
+        }
+    }
+
+    /**
+     * a growing big endian byte array
+     */
+    private final static class Bytes {
+
+        byte[] data = new byte[256];
+        int length = 0;
+
+        Bytes u1(int value) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, length << 1);
+            }
+            data[length++] = (byte) value;
+            return this;
+        }
+
+        Bytes u2(int value) {
+            return u1(value >>> 8).u1(value);
+        }
+
+        Bytes u4(int value) {
+            return u2(value >>> 16).u2(value);
+        }
+
+        void u4(int position, int value) {
+            data[position] = (byte) (value >>> 24);
+            data[position + 1] = (byte) (value >>> 16);
+            data[position + 2] = (byte) (value >>> 8);
+            data[position + 3] = (byte) value;
+        }
+
+        Bytes put(Bytes bytes) {
+            for (int i = 0; i < bytes.length; i++) {
+                u1(bytes.data[i]);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lexer that turns the source code into a {@link TokenStream} in a single linear pass,
+ * whitespace is skipped while the line and column of every token are kept for the error messages.
+ * the chars of an {@link AsciiCharSequence} are read from a String window over a few KB of its buffer that
+ * slides along with the lexer, reading a String is cheaper than a checked read of the buffer for every char
+ * while the code is never copied whole to the heap
+ */
+public class Lexer {
+
+    /**
+     * first-char dispatch tables built once from the fixed token texts in {@link Tokens},
+     * every slot holds the candidates starting with that char, longest first
+     */
+    private final static TokenKind[][] KEYWORDS = new TokenKind[128][];
+    private final static TokenKind[][] OPERATORS = new TokenKind[128][];
+
+    /**
+     * the chars of an ASCII window, and how many of them are left at least past the start of every token read
+     * from it. longer than any fixed token text, a longer name or number goes on in the code
+     */
+    private final static int WINDOW = 1 << 14;
+    private final static int WINDOW_MARGIN = 256;
+
+    static {
+        List<List<TokenKind>> keywords = new ArrayList<>();
+        List<List<TokenKind>> operators = new ArrayList<>();
+        for (int i = 0; i < 128; i++) {
+            keywords.add(new ArrayList<>());
+            operators.add(new ArrayList<>());
+        }
+        for (TokenKind kind : TokenKind.VALUES) {
+            if (kind.text == null) continue;
+            char first = kind.text.charAt(0);
+            (isLetter(first) ? keywords : operators).get(first).add(kind);
+        }
+        for (int i = 0; i < 128; i++) {
+            keywords.get(i).sort(Comparator.comparingInt((TokenKind kind) -> kind.text.length()).reversed());
+            operators.get(i).sort(Comparator.comparingInt((TokenKind kind) -> kind.text.length()).reversed());
+            KEYWORDS[i] = keywords.get(i).toArray(new TokenKind[0]);
+            OPERATORS[i] = operators.get(i).toArray(new TokenKind[0]);
+        }
+    }
+
+    private final CharSequence code;
+    private final int end;
+    private int codePointer = 0;
+    private int line = 1;
+    private int column = 1;
+
+    // what the chars are read from: the code, or a window over [base, limit) of an AsciiCharSequence. a token
+    // starting at refill or later slides the window first
+    private CharSequence chars;
+    private int base = 0;
+    private int limit;
+    private int refill;
+    private byte[] window;
+
+    // the offset of the next > at or after the last # read as a directive, the end of the code when there is none
+    private int greater = -1;
+
+    public Lexer(CharSequence code) {
+        this(code, 0, code.length());
+    }
+
+    /**
+     * a lexer for the range [from, to) of the code, the offsets of the tokens are offsets in the whole code
+     * while their lines and columns count from the start of the range
+     *
+     * @param code
+     * @param from
+     * @param to
+     */
+    public Lexer(CharSequence code, int from, int to) {
+        this.code = code;
+        this.codePointer = from;
+        this.end = to;
+        if (code instanceof AsciiCharSequence) {
+            window = new byte[Math.min(WINDOW, to - from)];
+            slide(from);
+        } else {
+            chars = code;
+            limit = to;
+            refill = to;
+        }
+    }
+
+    /**
+     * move the window of an ASCII code to start at the given offset
+     *
+     * @param from
+     */
+    private void slide(int from) {
+        AsciiCharSequence ascii = (AsciiCharSequence) code;
+        int length = Math.min(window.length, end - from);
+        ascii.bytes().get(ascii.offset() + from, window, 0, length);
+        chars = new String(window, 0, length, StandardCharsets.ISO_8859_1);
+        base = from;
+        limit = from + length;
+        refill = limit == end ? end : limit - WINDOW_MARGIN;
+    }
+
+    /**
+     * scan the whole code and return its tokens, the stream always ends with an EOF token
+     *
+     * @return TokenStream
+     */
+    public TokenStream tokenize() {
+        // the arrays grow as needed, so huge inputs do not reserve their worst case up front
+        return tokenize(new TokenStream(code, Math.min(code.length() / 4, 1 << 20)));
+    }
+
+    /**
+     * scan the whole code into a reused token stream, the arrays of the stream are kept
+     *
+     * @param tokens
+     * @return TokenStream
+     */
+    public TokenStream tokenize(TokenStream tokens) {
+        int length = end;
+        tokens.reset(code);
+        while (true) {
+            if (codePointer >= refill) {
+                if (codePointer >= length) {
+                    break;
+                }
+                slide(codePointer);
+            }
+            char c = chars.charAt(codePointer - base);
+            if (c == '\n') {
+                codePointer++;
+                line++;
+                column = 1;
+                continue;
+            }
+            if (c == ' ' || c == '\t' || c == '\r') {
+                next(1);
+                continue;
+            }
+            int start = codePointer;
+            int startColumn = column;
+            TokenKind kind;
+            if (isLetter(c)) {
+                kind = name();
+            } else if (c == '#') {
+                kind = library();
+            } else if (isDigit(c)) {
+                kind = number();
+            } else {
+                kind = operator(c);
+            }
+            tokens.add(kind, start, codePointer - start, line, startColumn);
+        }
+        tokens.add(TokenKind.EOF, length, 0, line, column);
+        return tokens;
+    }
+
+    /**
+     * increment our code pointer and column by specific value
+     *
+     * @param length
+     */
+    private void next(int length) {
+        codePointer += length;
+        column += length;
+    }
+
+    private char peek(int offset) {
+        int index = codePointer + offset;
+        if (index < limit) {
+            return chars.charAt(index - base);
+        }
+        return index < end ? code.charAt(index) : '\0';
+    }
+
+    /**
+     * user-defined-name or reserved word:  letter ( letter | digit )*
+     *
+     * @return TokenKind
+     */
+    private TokenKind name() {
+        int start = codePointer;
+        int scanned = Recognizers.scanName(chars, start - base, limit - base) + base;
+        if (scanned == limit && limit < end) {
+            // longer than the rest of the window
+            scanned = Recognizers.scanName(code, start, end);
+        }
+        next(scanned - start);
+        for (TokenKind keyword : KEYWORDS[chars.charAt(start - base)]) {
+            if (keyword.text.length() == codePointer - start && regionMatches(start, keyword.text)) {
+                return keyword;
+            }
+        }
+        return TokenKind.IDENTIFIER;
+    }
+
+    /**
+     * library declaration:  # include < name > ;  as a single token, a # that doesn't start one is a HASH token
+     *
+     * @return TokenKind
+     */
+    private TokenKind library() {
+        if (greater < codePointer) {
+            greater = indexOf('>', codePointer);
+        }
+        int end = Recognizers.scanInclude(code, codePointer, greater);
+        if (end < 0) {
+            next(1);
+            return TokenKind.HASH;
+        }
+        while (codePointer < end) {
+            if (code.charAt(codePointer) == '\n') {
+                line++;
+                column = 0;
+            }
+            next(1);
+        }
+        return TokenKind.LIBRARY;
+    }
+
+    /**
+     * number:  digits ( . digits )? ( e ( + | - )? digits )?  followed by any glued letters or digits,
+     * so that malformed numbers like 12ab stay one token and are rejected by the parser
+     *
+     * @return TokenKind
+     */
+    private TokenKind number() {
+        while (isDigit(peek(0))) {
+            next(1);
+        }
+        if (peek(0) == '.') {
+            next(1);
+            while (isDigit(peek(0))) {
+                next(1);
+            }
+        }
+        if ((peek(0) == 'e' || peek(0) == 'E')
+                && (isDigit(peek(1)) || ((peek(1) == '+' || peek(1) == '-') && isDigit(peek(2))))) {
+            next(2);
+            while (isDigit(peek(0))) {
+                next(1);
+            }
+        }
+        while (isLetter(peek(0)) || isDigit(peek(0)) || peek(0) == '.') {
+            next(1);
+        }
+        return TokenKind.NUMBER;
+    }
+
+    /**
+     * operators and punctuation, the longest operator wins
+     *
+     * @param c
+     * @return TokenKind
+     */
+    private TokenKind operator(char c) {
+        if (c < 128) {
+            for (TokenKind operator : OPERATORS[c]) {
+                if (regionMatches(codePointer, operator.text)) {
+                    next(operator.text.length());
+                    return operator;
+                }
+            }
+        }
+        next(1);
+        return TokenKind.UNKNOWN;
+    }
+
+    /**
+     * to find if our code at specific index match a certain string, without copying the code
+     *
+     * @param start
+     * @param word
+     * @return boolean
+     */
+    private boolean regionMatches(int start, String word) {
+        if (start + word.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (chars.charAt(start - base + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param c
+     * @param from
+     * @return int the offset of the first c at or after from, the length of the code when there is none
+     */
+    private int indexOf(char c, int from) {
+        int length = code.length();
+        if (code instanceof AsciiCharSequence) {
+            AsciiCharSequence ascii = (AsciiCharSequence) code;
+            int found = AsciiScanner.INSTANCE.indexOf(ascii.bytes(), ascii.offset() + from, ascii.offset() + length,
+                    (byte) c);
+            return found < 0 ? length : found - ascii.offset();
+        }
+        for (int i = from; i < length; i++) {
+            if (code.charAt(i) == c) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
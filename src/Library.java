@@ -0,0 +1,65 @@
+import java.nio.file.Path;
+
+/**
+ * an included library file as loaded by a {@link LibraryResolver}: the result of its parse and the names it
+ * exports to the programs that include it, its own names and the names of the libraries it includes
+ */
+public final class Library {
+
+    private final String name;
+    private final Path path;
+    private final ErrorCode failure;
+    private final ParseResult result;
+
+    Library(String name, Path path, ErrorCode failure, ParseResult result) {
+        this.name = name;
+        this.path = path;
+        this.failure = failure;
+        this.result = result;
+    }
+
+    /**
+     * @return String the name in the  #include<name>;
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Path the file, null when it wasn't found
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isValid() {
+        return failure == null;
+    }
+
+    /**
+     * @return ErrorCode the error an include of this library reports, null for a valid library
+     */
+    public ErrorCode getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return ParseResult the parse of the library, null when it wasn't found or is part of an include cycle
+     */
+    public ParseResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return SymbolTable the exported names, null for an invalid library
+     */
+    SymbolTable getExports() {
+        return failure == null ? result.getSymbols() : null;
+    }
+
+    @Override
+    public String toString() {
+        return name + (path != null ? " (" + path + ")" : "") + ": "
+                + (failure == null ? "valid" : failure.getMessage());
+    }
+}
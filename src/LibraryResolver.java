@@ -0,0 +1,311 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * finds the files of  #include<name>;  in a list of directories and parses them as libraries, a library is
+ * lib-decl   declarations   $  and the programs that include it see its consts and vars. a resolver is meant
+ * to be shared by all the parsers of a batch: every version of a file, by its path and modification time, is
+ * parsed once and kept, the includes of a code load in parallel on the executor and a library included by
+ * several others is loaded once.
+ *
+ * the file system is asked once per run: a name is looked up in the directories and a file checked for a new
+ * version the first time a run needs them, the other includes of the run use what was found then. a run lasts
+ * until {@link #refresh}, so the changes to the files show in the loads of the next run
+ *
+ * an include cycle is found on the graph of the includes before any library waits for another, so a library
+ * on a cycle fails with {@link ErrorCode#INCLUDE_CYCLE} instead of waiting forever
+ */
+public class LibraryResolver {
+
+    private final List<Path> includePath;
+    private final Executor executor;
+
+    // the last version of every library file loaded
+    private final ConcurrentHashMap<Path, Module> modules = new ConcurrentHashMap<>();
+    private final LongAdder parseCount = new LongAdder();
+
+    // the files of the names looked up in this run, empty when a name isn't in the include path
+    private volatile ConcurrentHashMap<String, Optional<Path>> files = new ConcurrentHashMap<>();
+    private volatile int run = 0;
+
+    /**
+     * @param includePath the directories searched in order
+     */
+    public LibraryResolver(List<Path> includePath) {
+        this(includePath, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param includePath the directories searched in order
+     * @param executor    runs the loads of the libraries
+     */
+    public LibraryResolver(List<Path> includePath, Executor executor) {
+        this.includePath = new ArrayList<>();
+        for (Path directory : includePath) {
+            this.includePath.add(directory.toAbsolutePath().normalize());
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * @return long how many library files were parsed, a file is parsed again only when it changed
+     */
+    public long getParseCount() {
+        return parseCount.sum();
+    }
+
+    /**
+     * start a new run: the loads after this look the names up again and see the files changed since
+     */
+    public synchronized void refresh() {
+        files = new ConcurrentHashMap<>();
+        run++;
+    }
+
+    /**
+     * the file of a library: the name resolved against the directories of the include path in order, a name
+     * that leads out of a directory is not looked up there
+     *
+     * @param name
+     * @return Path null when no directory has the file
+     */
+    public Path find(String name) {
+        for (Path directory : includePath) {
+            Path file;
+            try {
+                file = directory.resolve(name).normalize();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (file.startsWith(directory) && Files.isRegularFile(file)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * start loading a library unless it is loaded or loading already. a loaded library is loaded again when
+     * the file of a library it includes, directly or not, changed since, as far as the current run knows
+     *
+     * @param name the name in the  #include<name>;
+     * @return CompletableFuture<Library>
+     */
+    public CompletableFuture<Library> load(String name) {
+        Path file = fileOf(name);
+        while (true) {
+            Module module = file == null ? null : module(file);
+            if (module == null) {
+                return CompletableFuture.completedFuture(new Library(name, file, ErrorCode.LIBRARY_NOT_FOUND, null));
+            }
+            if (module.started.compareAndSet(false, true)) {
+                executor.execute(() -> build(name, module));
+                return module.library;
+            }
+            if (!module.library.isDone() || !isStale(module, new HashSet<>())) {
+                return module.library;
+            }
+            modules.replace(file, module, new Module(module));
+        }
+    }
+
+    /**
+     * the name of a library in the text of its LIBRARY token, the text between < and > without the spaces
+     *
+     * @param code
+     * @param start the offset of the token
+     * @param end   the offset after the token
+     * @return String
+     */
+    static String nameOf(CharSequence code, int start, int end) {
+        StringBuilder name = new StringBuilder();
+        int i = start;
+        while (i < end && code.charAt(i) != '<') {
+            i++;
+        }
+        for (i++; i < end && code.charAt(i) != '>'; i++) {
+            if (!Character.isWhitespace(code.charAt(i))) {
+                name.append(code.charAt(i));
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * check for a cycle, then load the includes of the library and parse it once they are all loaded
+     */
+    private void build(String name, Module module) {
+        try {
+            module.dependencies = new Module[module.includes.length];
+            for (int i = 0; i < module.includes.length; i++) {
+                module.dependencies[i] = moduleOf(module.includes[i]);
+            }
+            if (inCycle(module)) {
+                module.library.complete(new Library(name, module.path, ErrorCode.INCLUDE_CYCLE, null));
+                return;
+            }
+            CompletableFuture<?>[] includes = new CompletableFuture<?>[module.includes.length];
+            for (int i = 0; i < includes.length; i++) {
+                includes[i] = load(module.includes[i]);
+            }
+            CompletableFuture.allOf(includes).thenRunAsync(() -> {
+                parseCount.increment();
+                // the includes are loaded, the parser finds them done
+                ParseResult result = new RecursiveDescentParser(module.code).setLibraries(this).parseLibrary();
+                module.library.complete(new Library(name, module.path,
+                        result.isValid() ? null : ErrorCode.LIBRARY_INVALID, result));
+            }, executor).exceptionally(e -> {
+                module.library.completeExceptionally(e);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            module.library.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return boolean true when an include of the library, or of the libraries it includes, leads to another
+     * file or another version of a file than when it was loaded
+     */
+    private boolean isStale(Module module, Set<Path> seen) {
+        if (!seen.add(module.path)) {
+            return false;
+        }
+        for (int i = 0; i < module.includes.length; i++) {
+            Module current = moduleOf(module.includes[i]);
+            if (current != module.dependencies[i] || current != null && isStale(current, seen)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return boolean true when the library includes itself through any chain of includes
+     */
+    private boolean inCycle(Module start) {
+        Deque<Module> pending = new ArrayDeque<>();
+        Set<Path> seen = new HashSet<>();
+        pending.push(start);
+        while (!pending.isEmpty()) {
+            for (String include : pending.pop().includes) {
+                Path file = fileOf(include);
+                if (file == null) {
+                    continue;
+                }
+                if (file.equals(start.path)) {
+                    return true;
+                }
+                Module module = seen.add(file) ? module(file) : null;
+                if (module != null) {
+                    pending.push(module);
+                }
+            }
+        }
+        return false;
+    }
+
+    private Module moduleOf(String include) {
+        Path file = fileOf(include);
+        return file == null ? null : module(file);
+    }
+
+    /**
+     * @param name
+     * @return Path the file of the name found in this run, null when no directory has it
+     */
+    private Path fileOf(String name) {
+        return files.computeIfAbsent(name, key -> Optional.ofNullable(find(key))).orElse(null);
+    }
+
+    /**
+     * the current version of a file, read and scanned for its includes when it is new or changed. a version
+     * checked in this run is taken without asking the file system again
+     *
+     * @param file
+     * @return Module null when the file can't be read
+     */
+    private Module module(Path file) {
+        int run = this.run;
+        Module module = modules.get(file);
+        if (module != null && module.checked == run) {
+            return module;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().toMillis();
+            long size = attributes.size();
+            if (module != null && module.isVersion(modified, size)) {
+                module.checked = run;
+                return module;
+            }
+            Module read = new Module(file, modified, size, FileUtil.readFile(file.toFile()));
+            read.checked = run;
+            // of two threads reading the same new version only the first one keeps it
+            return modules.merge(file, read, (old, fresh) -> old.isVersion(fresh.modified, fresh.size) ? old : fresh);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * one version of a library file with the names it includes, its library is loaded at most once
+     */
+    private final static class Module {
+
+        final Path path;
+        final long modified;
+        final long size;
+        final String code;
+        final String[] includes;
+        final AtomicBoolean started = new AtomicBoolean();
+        final CompletableFuture<Library> library = new CompletableFuture<>();
+        // the versions of the includes when the library was loaded, set before it completes
+        Module[] dependencies;
+        // the last run that found this version on disk
+        volatile int checked = -1;
+
+        Module(Path path, long modified, long size, String code) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.code = code;
+            // the includes come first, like in a program
+            TokenStream tokens = new Lexer(code).tokenize();
+            List<String> includes = new ArrayList<>();
+            for (int i = 0; tokens.kind(i) == TokenKind.LIBRARY; i++) {
+                includes.add(nameOf(code, tokens.start(i), tokens.end(i)));
+            }
+            this.includes = includes.toArray(new String[0]);
+        }
+
+        // the same version to load again since the libraries it includes changed
+        Module(Module stale) {
+            this.path = stale.path;
+            this.modified = stale.modified;
+            this.size = stale.size;
+            this.code = stale.code;
+            this.includes = stale.includes;
+            this.checked = stale.checked;
+        }
+
+        boolean isVersion(long modified, long size) {
+            return this.modified == modified && this.size == size;
+        }
+    }
+}
@@ -1,14 +1,81 @@
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * usage:  Main [--threads n] [--max-in-flight-mb n] [--max-errors n] [--cache file] [--include-path dirs] (file | directory | glob | @list-file)...
+ * without any input the default src/code.txt is validated
+ * with  -Dparser.profile=true  the calls and times of the parser rules are printed at the end
+ */
 public class Main {
     public static void main(String[]args) {
-        String input= "";
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxInFlightBytes = 512L << 20;
+        int maxErrors = 1;
+        String cacheFile = null;
+        LibraryResolver libraries = null;
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--max-in-flight-mb") && i + 1 < args.length) {
+                maxInFlightBytes = Long.parseLong(args[++i]) << 20;
+            } else if (args[i].equals("--max-errors") && i + 1 < args.length) {
+                maxErrors = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                cacheFile = args[++i];
+            } else if (args[i].equals("--include-path") && i + 1 < args.length) {
+                List<Path> includePath = new ArrayList<>();
+                for (String directory : args[++i].split(File.pathSeparator)) {
+                    includePath.add(Paths.get(directory));
+                }
+                libraries = new LibraryResolver(includePath);
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+        if (inputs.isEmpty()) {
+            try {
+                CharSequence input = FileUtil.mapFile(new File("src" + File.separator + "code.txt"));
+                ParseResult result = new RecursiveDescentParser(input).setMaxErrors(maxErrors)
+                        .setLibraries(libraries).parse();
+                if (result.isValid()) {
+                    System.out.println(result);
+                } else {
+                    System.out.println("invalid syntax");
+                    Diagnostics errors = result.getDiagnostics();
+                    for (int i = 0; i < errors.size(); i++) {
+                        System.out.println(errors.render(i, input));
+                    }
+                }
+                if (ParseProfiler.ENABLED) {
+                    System.out.println(ParseProfiler.snapshot());
+                }
+                System.exit(result.isValid() ? 0 : 1);
+            }
+            catch (IOException e) { System.out.println(e.getMessage()); System.exit(2); }
+        }
         try {
-            input = FileUtil.readFile(new File("src\\code.txt"));
-            RecursiveDescentParser recursiveDescentParser = new RecursiveDescentParser(input);
-            recursiveDescentParser.parse();
+            List<Path> files = BatchValidator.collectFiles(inputs);
+            BatchValidator validator = new BatchValidator(threads, maxInFlightBytes, maxErrors).setLibraries(libraries);
+            int failures;
+            if (cacheFile == null) {
+                failures = validator.run(files, System.out);
+            } else {
+                try (ParseCache cache = new ParseCache(1 << 16, Paths.get(cacheFile))) {
+                    failures = validator.setCache(cache).run(files, System.out);
+                    System.out.println("cache: " + cache);
+                }
+            }
+            if (ParseProfiler.ENABLED) {
+                System.out.println(ParseProfiler.snapshot());
+            }
+            System.exit(failures == 0 ? 0 : 1);
         }
-        catch (IOException e) { System.out.println(e.getMessage()); }
+        catch (IOException e) { System.out.println(e.getMessage()); System.exit(2); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); System.exit(2); }
     }
 }
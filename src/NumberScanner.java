@@ -0,0 +1,151 @@
+/**
+ * one pass scanner that classifies a span of the code as an int literal, a float literal or neither,
+ * without exceptions or allocation. the parsed value of the last scan is kept for the later stages
+ *
+ * int-number:    ( + | - )? digits
+ * float-number:  ( + | - )? ( digits ( . digits* )? | . digits ) ( ( e | E ) ( + | - )? digits )? ( f | F | d | D )?
+ */
+public class NumberScanner {
+
+    public static enum Kind {
+        NONE,
+        INT,
+        FLOAT,
+        /**
+         * an int literal outside of the int range, reported as an error instead of being read as a float
+         */
+        INT_OVERFLOW,
+    }
+
+    private final static double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // the most significant digits we keep in the mantissa, the rest only move the exponent
+    private final static int MAX_MANTISSA_DIGITS = 18;
+
+    private int intValue;
+    private float floatValue;
+
+    /**
+     * @return int the value of the last scan when it was an INT
+     */
+    public int intValue() {
+        return intValue;
+    }
+
+    /**
+     * @return float the value of the last scan when it was an INT or a FLOAT
+     */
+    public float floatValue() {
+        return floatValue;
+    }
+
+    /**
+     * classify code[start, end)
+     *
+     * @param code
+     * @param start
+     * @param end
+     * @return Kind
+     */
+    public Kind scan(CharSequence code, int start, int end) {
+        return scan(code, start, end, false);
+    }
+
+    /**
+     * classify code[start, end), negative is set when the minus sign was read as a separate token
+     *
+     * @param code
+     * @param start
+     * @param end
+     * @param negative
+     * @return Kind
+     */
+    public Kind scan(CharSequence code, int start, int end, boolean negative) {
+        int i = start;
+        if (i < end && (code.charAt(i) == '+' || code.charAt(i) == '-')) {
+            negative ^= code.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int mantissaDigits = 0;
+        int exponent = 0;
+        int digits = 0;
+        // the int part is accumulated as a negative number so Integer.MIN_VALUE fits
+        long intPart = 0;
+        boolean intOverflow = false;
+
+        for (; i < end && isDigit(code.charAt(i)); i++) {
+            int digit = code.charAt(i) - '0';
+            if (!intOverflow) {
+                intPart = intPart * 10 - digit;
+                intOverflow = intPart < Integer.MIN_VALUE;
+            }
+            if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + digit;
+                if (mantissa != 0) mantissaDigits++;
+            } else {
+                exponent++;
+            }
+            digits++;
+        }
+        if (i == end) {
+            if (digits == 0) return Kind.NONE;
+            if (intOverflow || (!negative && intPart == Integer.MIN_VALUE)) return Kind.INT_OVERFLOW;
+            intValue = negative ? (int) intPart : (int) -intPart;
+            floatValue = intValue;
+            return Kind.INT;
+        }
+
+        if (code.charAt(i) == '.') {
+            for (i++; i < end && isDigit(code.charAt(i)); i++) {
+                if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (code.charAt(i) - '0');
+                    if (mantissa != 0) mantissaDigits++;
+                    exponent--;
+                }
+                digits++;
+            }
+        }
+        if (digits == 0) return Kind.NONE;
+
+        if (i < end && (code.charAt(i) == 'e' || code.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (code.charAt(i) == '+' || code.charAt(i) == '-')) {
+                negativeExponent = code.charAt(i) == '-';
+                i++;
+            }
+            if (i == end || !isDigit(code.charAt(i))) return Kind.NONE;
+            int exponentValue = 0;
+            for (; i < end && isDigit(code.charAt(i)); i++) {
+                // anything past this is already zero or infinity for a float
+                exponentValue = Math.min(exponentValue * 10 + (code.charAt(i) - '0'), 1000);
+            }
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+        if (i < end && "fFdD".indexOf(code.charAt(i)) >= 0) {
+            i++;
+        }
+        if (i != end) return Kind.NONE;
+
+        double value = mantissa;
+        if (exponent < 0) {
+            for (int e = -exponent; e > 0 && value != 0; e -= 22) {
+                value /= POWERS_OF_TEN[Math.min(e, 22)];
+            }
+        } else {
+            for (int e = exponent; e > 0 && !Double.isInfinite(value); e -= 22) {
+                value *= POWERS_OF_TEN[Math.min(e, 22)];
+            }
+        }
+        floatValue = (float) (negative ? -value : value);
+        return Kind.FLOAT;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,303 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * cache of parse results keyed by a 64 bit hash of the code, so unchanged files are not parsed again. a
+ * second, independent 64 bit hash of the code is stored with every result and has to match too on a hit.
+ * the results are kept in a memory tier bounded to a number of entries and evicting the least recently
+ * used one, and optionally in a disk tier that survives restarts: a single append-only file that is
+ * memory mapped and indexed when the cache is opened. a hit returns the stored result and errors without
+ * running the parser, the trees are not cached
+ *
+ * the disk file:  header (magic, version, used bytes)  followed by records
+ * record:         hash, check hash, code length, valid, chars, tokens, names, parse nanos, error count,
+ *                 (error code, offset, line, column) for every error
+ */
+public class ParseCache implements Closeable {
+
+    /**
+     * part of every key, change it whenever the grammar or the results of the parser change so the results
+     * of an older parser are never returned
+     */
+    public final static String VERSION = "rdp-parse-5";
+
+    private final static int MAGIC = 0x52445043;
+    private final static int HEADER = 16;
+    private final static int RECORD = 8 + 8 + 4 + 1 + 4 + 4 + 4 + 8 + 2;
+    private final static int ERROR_RECORD = 1 + 4 + 4 + 4;
+    private final static long SEED = VERSION.hashCode() * 0x9E3779B97F4A7C15L;
+    private final static long CHECK_SEED = VERSION.hashCode() * 0xD6E8FEB86659FD93L + 0xCBF29CE484222325L;
+
+    private final LinkedHashMap<Long, Entry> memory;
+
+    private FileChannel channel;
+    private MappedByteBuffer disk;
+    // hash to the position of its record in the disk file
+    private final Map<Long, Integer> diskIndex = new HashMap<>();
+
+    private long hits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * a memory only cache
+     *
+     * @param maxEntries the most results kept in memory
+     */
+    public ParseCache(int maxEntries) {
+        memory = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * a cache that also keeps every result in a file, a file of another version or whose records don't add up
+     * to its used length is started over
+     *
+     * @param maxEntries the most results kept in memory
+     * @param file
+     * @throws IOException
+     */
+    public ParseCache(int maxEntries, Path file) throws IOException {
+        this(maxEntries);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = channel.size();
+        disk = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, 1 << 16));
+        if (size < HEADER || disk.getInt(0) != MAGIC || disk.getInt(4) != VERSION.hashCode() || !index()) {
+            diskIndex.clear();
+            disk.putInt(0, MAGIC);
+            disk.putInt(4, VERSION.hashCode());
+            disk.putLong(8, HEADER);
+        }
+    }
+
+    /**
+     * index the records of the disk file
+     *
+     * @return boolean false when the used length or a record is out of the file, the file is damaged
+     */
+    private boolean index() {
+        long used = disk.getLong(8);
+        if (used < HEADER || used > disk.capacity()) {
+            return false;
+        }
+        for (int position = HEADER; position < used; ) {
+            int length = position + RECORD <= used ? recordLength(position) : -1;
+            if (length < RECORD || position + (long) length > used) {
+                return false;
+            }
+            diskIndex.put(disk.getLong(position), position);
+            position += length;
+        }
+        return true;
+    }
+
+    /**
+     * @param code
+     * @return ParseResult the cached result of the code, parsed with the parser of the thread on a miss
+     */
+    public ParseResult parse(CharSequence code) {
+        return parse(code, 1);
+    }
+
+    /**
+     * @param code
+     * @param maxErrors
+     * @return ParseResult the cached result of the code, parsed with the parser of the thread on a miss
+     */
+    public ParseResult parse(CharSequence code, int maxErrors) {
+        long hash = hash(code, maxErrors);
+        long check = check(code, maxErrors);
+        synchronized (this) {
+            Entry entry = memory.get(hash);
+            if (entry != null && entry.check == check && entry.result.getCharCount() == code.length()) {
+                hits++;
+                return entry.result;
+            }
+            Integer position = diskIndex.get(hash);
+            if (position != null && disk != null && disk.getLong(position + 8) == check
+                    && disk.getInt(position + 16) == code.length()) {
+                ParseResult result = read(position);
+                memory.put(hash, new Entry(check, result));
+                diskHits++;
+                return result;
+            }
+            misses++;
+        }
+        ParseResult result = ParserPool.parse(code, maxErrors);
+        synchronized (this) {
+            memory.put(hash, new Entry(check, result));
+            if (disk != null && !diskIndex.containsKey(hash)) {
+                write(hash, check, code.length(), result);
+            }
+        }
+        return result;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return long the hits found in the disk file and not in memory
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return hits + " hits, " + diskHits + " disk hits, " + misses + " misses, " + evictions + " evictions";
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            disk.force();
+            channel.close();
+            channel = null;
+            disk = null;
+        }
+    }
+
+    /**
+     * hash of the chars of the code, the version and the error cap
+     *
+     * @param code
+     * @param maxErrors
+     * @return long
+     */
+    static long hash(CharSequence code, int maxErrors) {
+        long hash = SEED ^ maxErrors;
+        int length = code.length();
+        int i = 0;
+        // four chars per multiply
+        for (; i + 4 <= length; i += 4) {
+            long chars = code.charAt(i) | (long) code.charAt(i + 1) << 16 | (long) code.charAt(i + 2) << 32
+                    | (long) code.charAt(i + 3) << 48;
+            hash = Long.rotateLeft(hash ^ chars * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        for (; i < length; i++) {
+            hash = Long.rotateLeft(hash ^ code.charAt(i) * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        hash ^= length;
+        // final mix so every bit of the input reaches every bit of the hash
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * a second hash of the chars of the code, the version and the error cap, FNV-1a over the chars with its own
+     * seed, so a code with the key of another one isn't taken for it unless both hashes collide
+     *
+     * @param code
+     * @param maxErrors
+     * @return long
+     */
+    static long check(CharSequence code, int maxErrors) {
+        long hash = CHECK_SEED ^ maxErrors;
+        int length = code.length();
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ code.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= (long) length << 32;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private int recordLength(int position) {
+        return RECORD + disk.getShort(position + RECORD - 2) * ERROR_RECORD;
+    }
+
+    private ParseResult read(int position) {
+        int errorCount = disk.getShort(position + RECORD - 2);
+        Diagnostics errors = errorCount == 0 ? Diagnostics.EMPTY : new Diagnostics(errorCount);
+        for (int i = 0, error = position + RECORD; i < errorCount; i++, error += ERROR_RECORD) {
+            errors.add(ErrorCode.VALUES[disk.get(error)], disk.getInt(error + 1), disk.getInt(error + 5),
+                    disk.getInt(error + 9));
+        }
+        return new ParseResult(disk.get(position + 20) != 0, errors, disk.getInt(position + 21),
+                disk.getInt(position + 25), disk.getInt(position + 29), disk.getLong(position + 33), null);
+    }
+
+    /**
+     * append the record of a result to the disk file, the used length in the header is moved after the
+     * record is complete so a crash while writing leaves no half record
+     */
+    private void write(long hash, long check, int length, ParseResult result) {
+        Diagnostics errors = result.getDiagnostics();
+        int errorCount = Math.min(errors.size(), Short.MAX_VALUE);
+        int position = (int) disk.getLong(8);
+        long end = (long) position + RECORD + (long) errorCount * ERROR_RECORD;
+        if (end > disk.capacity()) {
+            if (end > Integer.MAX_VALUE) {
+                // the file is full, the memory tier still works
+                return;
+            }
+            try {
+                disk.force();
+                disk = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(Integer.MAX_VALUE,
+                        Math.max(end, (long) disk.capacity() << 1)));
+            } catch (IOException e) {
+                return;
+            }
+        }
+        disk.putLong(position, hash);
+        disk.putLong(position + 8, check);
+        disk.putInt(position + 16, length);
+        disk.put(position + 20, (byte) (result.isValid() ? 1 : 0));
+        disk.putInt(position + 21, result.getCharCount());
+        disk.putInt(position + 25, result.getTokenCount());
+        disk.putInt(position + 29, result.getNameCount());
+        disk.putLong(position + 33, result.getParseNanos());
+        disk.putShort(position + 41, (short) errorCount);
+        for (int i = 0, error = position + RECORD; i < errorCount; i++, error += ERROR_RECORD) {
+            disk.put(error, (byte) errors.code(i).ordinal());
+            disk.putInt(error + 1, errors.offset(i));
+            disk.putInt(error + 5, errors.line(i));
+            disk.putInt(error + 9, errors.column(i));
+        }
+        disk.putLong(8, end);
+        diskIndex.put(hash, position);
+    }
+
+    /**
+     * a result in the memory tier with the check hash of its code
+     */
+    private final static class Entry {
+
+        private final long check;
+        private final ParseResult result;
+
+        Entry(long check, ParseResult result) {
+            this.check = check;
+            this.result = result;
+        }
+    }
+}
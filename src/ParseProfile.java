@@ -0,0 +1,112 @@
+import java.util.Locale;
+
+/**
+ * immutable counts of one parse or of all the parses of the JVM, see {@link ParseProfiler}
+ */
+public final class ParseProfile {
+
+    private final long[] calls;
+    private final long[] nanos;
+    private final long parseCount;
+    private final long inputChars;
+    private final long scannedChars;
+    private final int maxDepth;
+    private final long memoLookups;
+    private final long memoHits;
+
+    ParseProfile(long[] calls, long[] nanos, long parseCount, long inputChars, long scannedChars, int maxDepth,
+                 long memoLookups, long memoHits) {
+        this.calls = calls;
+        this.nanos = nanos;
+        this.parseCount = parseCount;
+        this.inputChars = inputChars;
+        this.scannedChars = scannedChars;
+        this.maxDepth = maxDepth;
+        this.memoLookups = memoLookups;
+        this.memoHits = memoHits;
+    }
+
+    public long getCalls(ParseProfiler.Rule rule) {
+        return calls[rule.ordinal()];
+    }
+
+    /**
+     * @param rule
+     * @return long the time spent in the rule, including the rules it called
+     */
+    public long getNanos(ParseProfiler.Rule rule) {
+        return nanos[rule.ordinal()];
+    }
+
+    public long getParseCount() {
+        return parseCount;
+    }
+
+    public long getInputChars() {
+        return inputChars;
+    }
+
+    /**
+     * @return long the chars read by the lexer plus the chars of the names and numbers read again by the parser
+     */
+    public long getScannedChars() {
+        return scannedChars;
+    }
+
+    /**
+     * @return double the scanned chars per input char, the higher above 1 the more of the input is read again
+     */
+    public double getScanRatio() {
+        return inputChars == 0 ? 0 : (double) scannedChars / inputChars;
+    }
+
+    /**
+     * @return int the deepest nesting of the rules
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return long the lookups of the memo of the error recovery, one per token a statement skip reads inside a
+     * nested statement
+     */
+    public long getMemoLookups() {
+        return memoLookups;
+    }
+
+    /**
+     * @return long the lookups that found a statement skipped already and jumped to its end
+     */
+    public long getMemoHits() {
+        return memoHits;
+    }
+
+    /**
+     * @return double the hits per lookup, 0 without lookups
+     */
+    public double getMemoHitRate() {
+        return memoLookups == 0 ? 0 : (double) memoHits / memoLookups;
+    }
+
+    /**
+     * one line per called rule with its calls and time, then the totals
+     *
+     * @return String
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT, "%-20s %14s %14s%n", "rule", "calls", "us"));
+        for (ParseProfiler.Rule rule : ParseProfiler.RULES) {
+            if (calls[rule.ordinal()] != 0) {
+                builder.append(String.format(Locale.ROOT, "%-20s %14d %14.1f%n", rule, calls[rule.ordinal()],
+                        nanos[rule.ordinal()] / 1e3));
+            }
+        }
+        builder.append(String.format(Locale.ROOT, "parses %d, input chars %d, scanned chars %d (%.2f per char), "
+                + "max depth %d, recovery memo hits %d of %d", parseCount, inputChars, scannedChars, getScanRatio(),
+                maxDepth, memoHits, memoLookups));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * counts and times the rules of {@link RecursiveDescentParser} to find out why a code parses slowly: the calls
+ * and the time of every rule, the chars scanned against the length of the input, the deepest nesting of
+ * the rules and the hits of the memo of the error recovery. profiling is switched on for the whole JVM with
+ * -Dparser.profile=true , the switch is a static final so when it is off the JIT folds the hooks of the
+ * parser away.
+ *
+ * every parser has its own profiler. a finished parse adds its counts to the totals of the JVM, see
+ * {@link #snapshot}, and commits a parser.Parse event and a parser.Rule event per called rule to a running
+ * flight recording
+ */
+public final class ParseProfiler {
+
+    public final static boolean ENABLED = Boolean.getBoolean("parser.profile");
+
+    public enum Rule {
+        TOKENIZE,
+        PROGRAM,
+        DECLARATION,
+        BLOCK,
+        STATEMENT,
+        ASSIGN,
+        EXP,
+        TERM,
+        FACTOR,
+        IF,
+        BOOLEAN_EXPRESSION,
+        IN_OUT,
+        WHILE,
+    }
+
+    final static Rule[] RULES = Rule.values();
+
+    private final static LongAdder[] TOTAL_CALLS = adders();
+    private final static LongAdder[] TOTAL_NANOS = adders();
+    private final static LongAdder TOTAL_PARSES = new LongAdder();
+    private final static LongAdder TOTAL_INPUT_CHARS = new LongAdder();
+    private final static LongAdder TOTAL_SCANNED_CHARS = new LongAdder();
+    private final static LongAccumulator TOTAL_MAX_DEPTH = new LongAccumulator(Math::max, 0);
+    private final static LongAdder TOTAL_MEMO_LOOKUPS = new LongAdder();
+    private final static LongAdder TOTAL_MEMO_HITS = new LongAdder();
+
+    private final long[] calls = new long[RULES.length];
+    // inclusive, the time of a rule contains the time of the rules it calls
+    private final long[] nanos = new long[RULES.length];
+    private int depth = 0;
+    private int maxDepth = 0;
+    private long inputChars = 0;
+    private long scannedChars = 0;
+    private long memoLookups = 0;
+    private long memoHits = 0;
+    private ParseEvent event;
+
+    ParseProfiler() {
+    }
+
+    /**
+     * clear the counts for a new parse
+     *
+     * @param inputChars the length of the code to parse
+     */
+    void start(int inputChars) {
+        Arrays.fill(calls, 0);
+        Arrays.fill(nanos, 0);
+        depth = 0;
+        maxDepth = 0;
+        this.inputChars = inputChars;
+        scannedChars = 0;
+        memoLookups = 0;
+        memoHits = 0;
+        event = new ParseEvent();
+        event.begin();
+    }
+
+    /**
+     * @param rule
+     * @return long the start time to pass to {@link #exit}
+     */
+    long enter(Rule rule) {
+        calls[rule.ordinal()]++;
+        if (++depth > maxDepth) {
+            maxDepth = depth;
+        }
+        return System.nanoTime();
+    }
+
+    void exit(Rule rule, long start) {
+        nanos[rule.ordinal()] += System.nanoTime() - start;
+        depth--;
+    }
+
+    /**
+     * @param chars the number of chars of the input read once more
+     */
+    void scanned(int chars) {
+        scannedChars += chars;
+    }
+
+    /**
+     * @param hit true when the memo of the error recovery knew where a statement skip ends
+     */
+    void memo(boolean hit) {
+        memoLookups++;
+        if (hit) {
+            memoHits++;
+        }
+    }
+
+    /**
+     * add the counts of a profiler that parsed a part of this parse, a chunk of the main block parsed in parallel
+     *
+     * @param part
+     */
+    void add(ParseProfiler part) {
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] += part.calls[i];
+            nanos[i] += part.nanos[i];
+        }
+        maxDepth = Math.max(maxDepth, depth + part.maxDepth);
+        scannedChars += part.scannedChars;
+        memoLookups += part.memoLookups;
+        memoHits += part.memoHits;
+    }
+
+    /**
+     * add the parse to the totals and commit its events
+     *
+     * @param tokenCount
+     * @param valid
+     */
+    void finish(int tokenCount, boolean valid) {
+        for (int i = 0; i < calls.length; i++) {
+            if (calls[i] != 0) {
+                TOTAL_CALLS[i].add(calls[i]);
+                TOTAL_NANOS[i].add(nanos[i]);
+            }
+        }
+        TOTAL_PARSES.increment();
+        TOTAL_INPUT_CHARS.add(inputChars);
+        TOTAL_SCANNED_CHARS.add(scannedChars);
+        TOTAL_MAX_DEPTH.accumulate(maxDepth);
+        TOTAL_MEMO_LOOKUPS.add(memoLookups);
+        TOTAL_MEMO_HITS.add(memoHits);
+
+        // null when the same tokens are parsed twice
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.inputChars = inputChars;
+                event.scannedChars = scannedChars;
+                event.tokenCount = tokenCount;
+                event.maxDepth = maxDepth;
+                event.memoLookups = memoLookups;
+                event.memoHits = memoHits;
+                event.valid = valid;
+                event.commit();
+            }
+            event = null;
+        }
+        if (new RuleEvent().isEnabled()) {
+            for (int i = 0; i < calls.length; i++) {
+                if (calls[i] != 0) {
+                    RuleEvent rule = new RuleEvent();
+                    rule.rule = RULES[i].name();
+                    rule.calls = calls[i];
+                    rule.time = nanos[i];
+                    rule.commit();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return ParseProfile the counts of the last parse
+     */
+    ParseProfile profile() {
+        return new ParseProfile(calls.clone(), nanos.clone(), 1, inputChars, scannedChars, maxDepth, memoLookups,
+                memoHits);
+    }
+
+    /**
+     * @return ParseProfile the counts of all the parses of the JVM since it started or since {@link #reset}
+     */
+    public static ParseProfile snapshot() {
+        long[] calls = new long[RULES.length];
+        long[] nanos = new long[RULES.length];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = TOTAL_CALLS[i].sum();
+            nanos[i] = TOTAL_NANOS[i].sum();
+        }
+        return new ParseProfile(calls, nanos, TOTAL_PARSES.sum(), TOTAL_INPUT_CHARS.sum(),
+                TOTAL_SCANNED_CHARS.sum(), (int) TOTAL_MAX_DEPTH.get(), TOTAL_MEMO_LOOKUPS.sum(),
+                TOTAL_MEMO_HITS.sum());
+    }
+
+    /**
+     * clear the totals, parses running meanwhile may be counted partly
+     */
+    public static void reset() {
+        for (int i = 0; i < RULES.length; i++) {
+            TOTAL_CALLS[i].reset();
+            TOTAL_NANOS[i].reset();
+        }
+        TOTAL_PARSES.reset();
+        TOTAL_INPUT_CHARS.reset();
+        TOTAL_SCANNED_CHARS.reset();
+        TOTAL_MAX_DEPTH.reset();
+        TOTAL_MEMO_LOOKUPS.reset();
+        TOTAL_MEMO_HITS.reset();
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[RULES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    @Name("parser.Parse")
+    @Label("Parse")
+    @Category("Parser")
+    @Description("A parse of a code, from its tokenizing to its result")
+    @StackTrace(false)
+    final static class ParseEvent extends Event {
+
+        @Label("Input Chars")
+        long inputChars;
+
+        @Label("Scanned Chars")
+        @Description("The chars read by the lexer and read again for names and numbers")
+        long scannedChars;
+
+        @Label("Tokens")
+        int tokenCount;
+
+        @Label("Max Depth")
+        int maxDepth;
+
+        @Label("Memo Lookups")
+        @Description("The lookups of the memo of the statements skipped by the error recovery")
+        long memoLookups;
+
+        @Label("Memo Hits")
+        long memoHits;
+
+        @Label("Valid")
+        boolean valid;
+    }
+
+    @Name("parser.Rule")
+    @Label("Parse Rule")
+    @Category("Parser")
+    @Description("The calls and the inclusive time of one rule during a parse")
+    @StackTrace(false)
+    final static class RuleEvent extends Event {
+
+        @Label("Rule")
+        String rule;
+
+        @Label("Calls")
+        long calls;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.List;
+
+/**
+ * immutable result of parsing one program
+ */
+public final class ParseResult {
+
+    private final boolean valid;
+    private final Diagnostics diagnostics;
+    private final int charCount;
+    private final int tokenCount;
+    private final int nameCount;
+    private final long parseNanos;
+    private final AstArena ast;
+    private final SymbolTable symbols;
+
+    public ParseResult(boolean valid, Diagnostics diagnostics, int charCount, int tokenCount, int nameCount,
+                       long parseNanos, AstArena ast) {
+        this(valid, diagnostics, charCount, tokenCount, nameCount, parseNanos, ast, null);
+    }
+
+    public ParseResult(boolean valid, Diagnostics diagnostics, int charCount, int tokenCount, int nameCount,
+                       long parseNanos, AstArena ast, SymbolTable symbols) {
+        this.valid = valid;
+        this.diagnostics = diagnostics;
+        this.charCount = charCount;
+        this.tokenCount = tokenCount;
+        this.nameCount = nameCount;
+        this.parseNanos = parseNanos;
+        this.ast = ast;
+        this.symbols = symbols;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * the independent errors found in the code in source order, there is more than one only when the parser
+     * was allowed to recover from errors
+     *
+     * @return List<String>
+     */
+    public List<String> getErrors() {
+        return diagnostics.messages();
+    }
+
+    /**
+     * the same errors as {@link #getErrors} as codes and positions, nothing is rendered to text
+     *
+     * @return Diagnostics
+     */
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * @return String the first error in the code, or null for a valid program
+     */
+    public String getFirstError() {
+        return diagnostics.size() == 0 ? null : diagnostics.render(0);
+    }
+
+    public int getCharCount() {
+        return charCount;
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * @return int the number of declared consts and vars
+     */
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    /**
+     * @return long the time spent in the grammar rules, the tokenizing done by reset is not included
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * @return AstArena the tree of a valid program when the parser was asked to build it, otherwise null
+     */
+    public AstArena getAst() {
+        return ast;
+    }
+
+    /**
+     * @return SymbolTable the declared names the symbol ids of the tree refer to, null when there is no tree
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    @Override
+    public String toString() {
+        return valid ? "valid syntax" : "invalid syntax" + System.lineSeparator()
+                + String.join(System.lineSeparator(), getErrors());
+    }
+}
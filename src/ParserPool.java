@@ -0,0 +1,57 @@
+/**
+ * one reusable parser per thread, so embedders validating at high rates don't allocate a parser,
+ * its token arrays and its tables for every input
+ */
+public class ParserPool {
+
+    /**
+     * a parser whose token arrays grew past this after a huge input is dropped instead of kept for the thread
+     */
+    private final static int MAX_RETAINED_TOKENS = 4 << 20;
+
+    private final static ThreadLocal<RecursiveDescentParser> PARSERS =
+            ThreadLocal.withInitial(RecursiveDescentParser::new);
+
+    /**
+     * parse the code with the parser of the current thread
+     *
+     * @param code
+     * @return ParseResult
+     */
+    public static ParseResult parse(CharSequence code) {
+        return parse(code, 1);
+    }
+
+    /**
+     * parse the code with the parser of the current thread, reporting up to maxErrors independent errors
+     *
+     * @param code
+     * @param maxErrors
+     * @return ParseResult
+     */
+    public static ParseResult parse(CharSequence code, int maxErrors) {
+        return parse(code, maxErrors, null);
+    }
+
+    /**
+     * parse the code with the parser of the current thread, resolving its includes with a shared resolver
+     *
+     * @param code
+     * @param maxErrors
+     * @param libraries null to only check the syntax of the includes
+     * @return ParseResult
+     */
+    public static ParseResult parse(CharSequence code, int maxErrors, LibraryResolver libraries) {
+        RecursiveDescentParser parser = PARSERS.get();
+        try {
+            return parser.reset(code).setMaxErrors(maxErrors).setLibraries(libraries).parse();
+        } finally {
+            // don't keep a reference to the code, it may be a mapped file
+            parser.clear();
+            parser.setLibraries(null);
+            if (parser.tokenCapacity() > MAX_RETAINED_TOKENS) {
+                PARSERS.remove();
+            }
+        }
+    }
+}
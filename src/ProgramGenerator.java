@@ -0,0 +1,331 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+/**
+ * seedable generator of programs following the grammar of {@link RecursiveDescentParser}, used to feed the
+ * benchmarks and the scaling tests. the program is streamed to a writer statement by statement, so it can be
+ * of any size without being held in memory. the same seed and options always give the same program
+ *
+ * usage:  ProgramGenerator [--seed n] [--includes n] [--consts n] [--vars n] [--statements n] [--depth n]
+ *                          [--expression n] [--error statement-index]... output-file
+ */
+public class ProgramGenerator {
+
+    private final static String[] RELATIONAL_OPERATIONS = {"==", "!=", "<", "<=", ">", ">="};
+    private final static String[] OPERATORS = {"+", "-", "*", "/", "%"};
+    private final static int ERROR_KINDS = 6;
+
+    private long seed = 0;
+    private int includes = 2;
+    private int consts = 4;
+    private int vars = 8;
+    private long statements = 100;
+    private int maxDepth = 3;
+    private int expressionLength = 4;
+    private final TreeSet<Long> errorStatements = new TreeSet<>();
+
+    private SplittableRandom random;
+    private CountingWriter out;
+    private List<Long> errorOffsets;
+    private int intVars;
+    private int floatVars;
+
+    public ProgramGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public ProgramGenerator includes(int includes) {
+        this.includes = includes;
+        return this;
+    }
+
+    public ProgramGenerator consts(int consts) {
+        this.consts = consts;
+        return this;
+    }
+
+    /**
+     * @param vars the number of declared vars, at least one int and one float var are always declared
+     */
+    public ProgramGenerator vars(int vars) {
+        this.vars = vars;
+        return this;
+    }
+
+    /**
+     * @param statements the number of statements in the main block, nested statements are not counted
+     */
+    public ProgramGenerator statements(long statements) {
+        this.statements = statements;
+        return this;
+    }
+
+    /**
+     * @param maxDepth the deepest nesting of if, while and block statements
+     */
+    public ProgramGenerator maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param expressionLength the most operators in the expression of an assignment
+     */
+    public ProgramGenerator expressionLength(int expressionLength) {
+        this.expressionLength = expressionLength;
+        return this;
+    }
+
+    /**
+     * replace the statement of the main block at the given index with an invalid one
+     *
+     * @param statementIndex
+     */
+    public ProgramGenerator errorAt(long statementIndex) {
+        errorStatements.add(statementIndex);
+        return this;
+    }
+
+    /**
+     * write the program
+     *
+     * @param writer
+     * @return List<Long> the char offsets where the injected errors start, in source order
+     * @throws IOException
+     */
+    public List<Long> generate(Writer writer) throws IOException {
+        random = new SplittableRandom(seed);
+        out = new CountingWriter(writer);
+        errorOffsets = new ArrayList<>();
+        intVars = Math.max(1, vars / 2);
+        floatVars = Math.max(1, vars - intVars);
+
+        for (int i = 0; i < includes; i++) {
+            out.write("#include<lib" + i + ">;\n");
+        }
+        out.write("main()\n");
+        for (int i = 0; i < consts; i++) {
+            if (i % 2 == 0) {
+                out.write("const int c" + i + " = " + random.nextInt(1000) + ";\n");
+            } else {
+                out.write("const float c" + i + " = " + floatLiteral() + ";\n");
+            }
+        }
+        writeNames("int", "i", intVars);
+        writeNames("float", "f", floatVars);
+        out.write("{\n");
+        for (long i = 0; i < statements; i++) {
+            if (errorStatements.contains(i)) {
+                errorOffsets.add(out.count + 1);
+                out.write(" ");
+                invalidStatement();
+            } else {
+                out.write(" ");
+                statement(1);
+            }
+            out.write(";\n");
+        }
+        out.write("}\n$\n");
+        out.flush();
+        return errorOffsets;
+    }
+
+    private void writeNames(String type, String prefix, int count) throws IOException {
+        // a few names per declaration so name lists get exercised
+        for (int i = 0; i < count; ) {
+            out.write("var " + type + " ");
+            int last = Math.min(count, i + 1 + random.nextInt(4));
+            for (; i < last; i++) {
+                out.write(prefix + i + (i + 1 < last ? ", " : ""));
+            }
+            out.write(";\n");
+        }
+    }
+
+    private void statement(int depth) throws IOException {
+        int choice = random.nextInt(depth < maxDepth ? 8 : 5);
+        switch (choice) {
+            case 0:
+            case 1:
+            case 2:
+                assignment();
+                break;
+            case 3:
+                out.write("input >> " + variable());
+                break;
+            case 4:
+                out.write("output << " + nameValue());
+                break;
+            case 5:
+                out.write("if (" + booleanExpression() + ") ");
+                statement(depth + 1);
+                if (random.nextBoolean()) {
+                    out.write(" else ");
+                    statement(depth + 1);
+                }
+                out.write(" endif");
+                break;
+            case 6:
+                out.write("while (" + booleanExpression() + ") ");
+                block(depth + 1);
+                break;
+            default:
+                block(depth + 1);
+        }
+    }
+
+    private void block(int depth) throws IOException {
+        out.write("{ ");
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            statement(depth);
+            out.write(i + 1 < count ? "; " : " ");
+        }
+        out.write("}");
+    }
+
+    private void assignment() throws IOException {
+        boolean isInt = random.nextBoolean();
+        out.write((isInt ? "i" + random.nextInt(intVars) : "f" + random.nextInt(floatVars)) + " = ");
+        expression(isInt, 1 + random.nextInt(Math.max(1, expressionLength)), 0);
+    }
+
+    private void expression(boolean isInt, int operators, int depth) throws IOException {
+        factor(isInt, depth);
+        for (int i = 1; i < operators; i++) {
+            out.write(" " + OPERATORS[random.nextInt(OPERATORS.length)] + " ");
+            factor(isInt, depth);
+        }
+    }
+
+    private void factor(boolean isInt, int depth) throws IOException {
+        int choice = random.nextInt(depth < 2 ? 4 : 3);
+        if (choice == 0) {
+            out.write(isInt || random.nextBoolean() ? String.valueOf(random.nextInt(1000)) : floatLiteral());
+        } else if (choice < 3) {
+            out.write(name());
+        } else {
+            out.write("(");
+            expression(isInt, 1 + random.nextInt(3), depth + 1);
+            out.write(")");
+        }
+    }
+
+    private void invalidStatement() throws IOException {
+        switch (random.nextInt(ERROR_KINDS)) {
+            case 0:
+                out.write("undeclared" + random.nextInt(100) + " = 1");
+                break;
+            case 1:
+                out.write("i0 = i0 +");
+                break;
+            case 2:
+                out.write("i0 = " + floatLiteral());
+                break;
+            case 3:
+                out.write("if (i0 < 1) i0 = 1");
+                break;
+            case 4:
+                out.write("if (i0 = 1) i0 = 2 endif");
+                break;
+            default:
+                out.write("i0 = 1 @ 2");
+        }
+    }
+
+    private String booleanExpression() {
+        return nameValue() + " " + RELATIONAL_OPERATIONS[random.nextInt(RELATIONAL_OPERATIONS.length)] + " "
+                + nameValue();
+    }
+
+    private String nameValue() {
+        return random.nextBoolean() ? name() : String.valueOf(random.nextInt(100));
+    }
+
+    private String name() {
+        int choice = random.nextInt(consts + intVars + floatVars);
+        if (choice < consts) return "c" + choice;
+        return choice < consts + intVars ? "i" + (choice - consts) : "f" + (choice - consts - intVars);
+    }
+
+    private String variable() {
+        return random.nextBoolean() ? "i" + random.nextInt(intVars) : "f" + random.nextInt(floatVars);
+    }
+
+    private String floatLiteral() {
+        return random.nextInt(1000) + "." + random.nextInt(100);
+    }
+
+    /**
+     * writer that counts the chars written so the offsets of the injected errors are known
+     */
+    private static class CountingWriter extends Writer {
+
+        private final Writer writer;
+        private long count = 0;
+
+        CountingWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            writer.write(chars, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String text) throws IOException {
+            writer.write(text);
+            count += text.length();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ProgramGenerator generator = new ProgramGenerator();
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed": generator.seed(Long.parseLong(args[++i])); break;
+                case "--includes": generator.includes(Integer.parseInt(args[++i])); break;
+                case "--consts": generator.consts(Integer.parseInt(args[++i])); break;
+                case "--vars": generator.vars(Integer.parseInt(args[++i])); break;
+                case "--statements": generator.statements(Long.parseLong(args[++i])); break;
+                case "--depth": generator.maxDepth(Integer.parseInt(args[++i])); break;
+                case "--expression": generator.expressionLength(Integer.parseInt(args[++i])); break;
+                case "--error": generator.errorAt(Long.parseLong(args[++i])); break;
+                default: output = args[i];
+            }
+        }
+        if (output == null) {
+            System.out.println("usage: ProgramGenerator [options] output-file");
+            System.exit(2);
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output),
+                StandardCharsets.US_ASCII), 1 << 16)) {
+            List<Long> errors = generator.generate(writer);
+            if (!errors.isEmpty()) {
+                System.out.println("errors injected at offsets " + errors);
+            }
+        }
+    }
+}
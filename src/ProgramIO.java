@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+
+/**
+ * where a running program reads its input >> statements from and writes its output << statements to
+ */
+public interface ProgramIO {
+
+    int readInt() throws IOException;
+
+    float readFloat() throws IOException;
+
+    void writeInt(int value) throws IOException;
+
+    void writeFloat(float value) throws IOException;
+
+    /**
+     * io over streams: the input is read as numbers separated by whitespace, every output is written on its
+     * own line. an int read from a float number is truncated
+     *
+     * @param in
+     * @param out
+     * @return ProgramIO
+     */
+    static ProgramIO of(InputStream in, PrintStream out) {
+        return new ProgramIO() {
+            private final StringBuilder number = new StringBuilder();
+
+            @Override
+            public int readInt() throws IOException {
+                String text = next();
+                try {
+                    return Integer.parseInt(text);
+                } catch (NumberFormatException e) {
+                    return (int) parseFloat(text);
+                }
+            }
+
+            @Override
+            public float readFloat() throws IOException {
+                return parseFloat(next());
+            }
+
+            @Override
+            public void writeInt(int value) {
+                out.println(value);
+            }
+
+            @Override
+            public void writeFloat(float value) {
+                out.println(value);
+            }
+
+            private float parseFloat(String text) throws IOException {
+                try {
+                    return Float.parseFloat(text);
+                } catch (NumberFormatException e) {
+                    throw new IOException("the input " + text + " is not a number");
+                }
+            }
+
+            private String next() throws IOException {
+                number.setLength(0);
+                int c = in.read();
+                while (c >= 0 && Character.isWhitespace(c)) {
+                    c = in.read();
+                }
+                while (c >= 0 && !Character.isWhitespace(c)) {
+                    number.append((char) c);
+                    c = in.read();
+                }
+                if (number.length() == 0) {
+                    throw new IOException("the input ended before an input statement");
+                }
+                return number.toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.regex.Pattern;
+
+/**
+ * hand written DFA recognizers for the lexical forms that were described by {@link Rejexes},
+ * they run directly over the source buffer so no Matcher or String is allocated.
+ *
+ * when the system property rdp.recognizers.compat is true every recognized span is also matched
+ * against the old regex and a mismatch throws, so the two definitions can be checked against each other
+ */
+public class Recognizers {
+
+    final static boolean COMPATIBILITY_CHECK = Boolean.getBoolean("rdp.recognizers.compat");
+
+    private final static Pattern NAME_PATTERN = Pattern.compile(Rejexes.NAME);
+    private final static Pattern INCLUDE_PATTERN = Pattern.compile(Rejexes.INCLUDE);
+
+    // char classes
+    private final static int OTHER = 0;
+    private final static int LETTER = 1;
+    private final static int DIGIT = 2;
+    private final static int SPACE = 3;
+    private final static int CLASSES = 4;
+
+    private final static byte[] CHAR_CLASS = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) CHAR_CLASS[c] = LETTER;
+        for (char c = 'A'; c <= 'Z'; c++) CHAR_CLASS[c] = LETTER;
+        for (char c = '0'; c <= '9'; c++) CHAR_CLASS[c] = DIGIT;
+        CHAR_CLASS[' '] = SPACE;
+        CHAR_CLASS['\t'] = SPACE;
+        CHAR_CLASS['\r'] = SPACE;
+        CHAR_CLASS['\n'] = SPACE;
+    }
+
+    private final static int DEAD = -1;
+
+    /**
+     * NAME:  letter ( letter | digit )*   state 0 is the start state and state 1 is the accepting state
+     */
+    private final static int[][] NAME_DFA = {
+            // OTHER, LETTER, DIGIT, SPACE
+            {DEAD, 1, DEAD, DEAD},
+            {DEAD, 1, 1, DEAD},
+    };
+
+    /**
+     * the fixed prefix of an include directive, spaces between its chars are ignored like they were
+     * stripped before the old regex ran
+     */
+    private final static String INCLUDE_PREFIX = Tokens.HASH + Tokens.INCLUDE + Tokens.LESS;
+
+    private static int charClass(char c) {
+        return c < 128 ? CHAR_CLASS[c] : OTHER;
+    }
+
+    /**
+     * run the NAME automaton from start and return the end of the longest name
+     *
+     * @param code
+     * @param start
+     * @param end   the scan never goes past this offset
+     * @return int  the end offset of the name, or start if there is no name at start
+     */
+    public static int scanName(CharSequence code, int start, int end) {
+        int state = 0;
+        int accepted = start;
+        for (int i = start; i < end; i++) {
+            state = NAME_DFA[state][charClass(code.charAt(i))];
+            if (state == DEAD) break;
+            accepted = i + 1;
+        }
+        if (COMPATIBILITY_CHECK && accepted > start) {
+            check(NAME_PATTERN, code.subSequence(start, accepted), true);
+        }
+        return accepted;
+    }
+
+    /**
+     * to find if a span of the code is exactly one name
+     *
+     * @param code
+     * @param start
+     * @param end
+     * @return boolean
+     */
+    public static boolean isName(CharSequence code, int start, int end) {
+        return start < end && scanName(code, start, end) == end;
+    }
+
+    /**
+     * recognize one  # include < name > ;  directive starting at start, the name is any text up to the next >
+     * that isn't only spaces
+     *
+     * @param code
+     * @param start
+     * @return int  the offset after the ; of the directive, or -1 if there is no directive at start
+     */
+    public static int scanInclude(CharSequence code, int start) {
+        int greater = start;
+        while (greater < code.length() && code.charAt(greater) != '>') {
+            greater++;
+        }
+        return scanInclude(code, start, greater);
+    }
+
+    /**
+     * recognize one directive when the next > is already known, a lexer finds it once for all the directives
+     * before it instead of once per #
+     *
+     * @param code
+     * @param start
+     * @param greater the offset of the first > at or after start, the length of the code when there is none
+     * @return int  the offset after the ; of the directive, or -1 if there is no directive at start
+     */
+    public static int scanInclude(CharSequence code, int start, int greater) {
+        int length = code.length();
+        int i = start;
+        // # include <
+        for (int matched = 0; matched < INCLUDE_PREFIX.length(); i++) {
+            if (i >= length) return fail(code, start, i);
+            char c = code.charAt(i);
+            if (charClass(c) == SPACE) continue;
+            if (c != INCLUDE_PREFIX.charAt(matched)) return fail(code, start, i + 1);
+            matched++;
+        }
+        // name >   without a > no longer text matches either, so the name isn't read
+        if (greater >= length) return fail(code, start, i);
+        while (i < greater && charClass(code.charAt(i)) == SPACE) i++;
+        if (i == greater) return fail(code, start, i + 1);
+        i = greater + 1;
+        // ;
+        while (i < length && charClass(code.charAt(i)) == SPACE) i++;
+        if (i >= length || code.charAt(i) != ';') return fail(code, start, Math.min(i + 1, length));
+        i++;
+        if (COMPATIBILITY_CHECK) {
+            check(INCLUDE_PATTERN, stripSpaces(code, start, i), true);
+        }
+        return i;
+    }
+
+    private static int fail(CharSequence code, int start, int end) {
+        if (COMPATIBILITY_CHECK) {
+            check(INCLUDE_PATTERN, stripSpaces(code, start, end), false);
+        }
+        return -1;
+    }
+
+    /**
+     * the text the regex is matched against: the directive without its spaces
+     */
+    private static String stripSpaces(CharSequence code, int start, int end) {
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = code.charAt(i);
+            if (charClass(c) != SPACE) builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static void check(Pattern pattern, CharSequence text, boolean expected) {
+        if (pattern.matcher(text).matches() != expected) {
+            throw new IllegalStateException("recognizer and regex " + pattern.pattern() + " disagree on: " + text);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Syntax Parser to Parse the following grammar
@@ -30,196 +32,693 @@ import java.util.stream.Collectors;
  * bool-exp  name-value       relational-oper        name-vaue
  * name-value   name    |      value
  * relational-oper   ==      |       !=         |     <     |       <=     |     >     |     >=
+ *
+ * the parser works on the token stream produced by {@link Lexer}, so whitespace is free between tokens
+ * and every error is reported with the line and column of the token where it happened.
+ * a parser keeps mutable state while it runs, so an instance must be confined to one thread
  */
 
 
 public class RecursiveDescentParser {
 
-    private static enum VarType {
+    static enum VarType {
         Int,
         Float,
     }
 
-    private String code;
-    private int codePointer = 0;
+    final static VarType[] VAR_TYPES = VarType.values();
 
-    private VarType currentVarType;
+    final static long END_STATEMENT = TokenKind.maskOf(Tokens.END_STATEMENT);
+    final static long ADD_OPERATORS = TokenKind.maskOf(Tokens.ADD_OPERATORS);
+    final static long MUL_OPERATORS = TokenKind.maskOf(Tokens.MUL_OPERATORS);
+    private final static long DECLARATION_SYNC = TokenKind.maskOf(EnumSet.of(TokenKind.CONST, TokenKind.VAR,
+            TokenKind.OPEN_BRACE, TokenKind.SEMICOLON));
+    private final static long LIBRARY_SYNC = TokenKind.maskOf(EnumSet.of(TokenKind.LIBRARY, TokenKind.MAIN,
+            TokenKind.CONST, TokenKind.VAR, TokenKind.OPEN_BRACE));
+    private final static long END_OF_CODE = TokenKind.maskOf(EnumSet.of(TokenKind.END_OF_FILE, TokenKind.EOF));
+    private final static long RELATIONAL_OPERATIONS = TokenKind.maskOf(Tokens.RELATIONAL_OPERATIONS);
 
-    private List<String> errorStack = new ArrayList<>();
+    // the main block is validated in chunks only from this many tokens on, a chunk has at least CHUNK_TOKENS
+    private final static int PARALLEL_MIN_TOKENS = 1 << 14;
+    private final static int CHUNK_TOKENS = 1 << 12;
 
-    private Map<String, VarType> userDefindNames = new HashMap();
+    final TokenStream tokens;
+    int tokenPointer = 0;
 
+    VarType currentVarType;
 
-    public RecursiveDescentParser(String code) {
-        code = code.replaceAll("\n", "");
-        code = code.replaceAll("\r", "");
-        code = code.replaceAll("\t", "");
-        code = code.replaceAll(" ", "");
-        this.code = code;
+    private final NumberScanner numbers = new NumberScanner();
+
+    // the error where the current failure started, the rules it fails through add nothing, -1 when none
+    private int failureCode = -1;
+    private int failureToken;
+
+    // the independent errors found so far, one per recovered failure
+    private final Diagnostics diagnostics = new Diagnostics(4);
+    private int maxErrors = 1;
+
+    // the token the skip of a failed statement stopped at plus 1, by the token the statement started at, 0 when
+    // not skipped yet. a failure deep in nested statements is recovered at every level and each level skips
+    // over the statements inside it again, with the memo it jumps over the ones already skipped instead
+    private int[] skipEnds = new int[0];
+    private boolean skipEndsCleared = false;
+    // the tokens [skipBase, skipLimit) the memo covers, a chunk of the main block only memoizes its own tokens
+    private int skipBase = 0;
+    private int skipLimit = Integer.MAX_VALUE;
+
+    // the declared names interned by their source spans, the symbol ids are dense in declaration order
+    final SymbolTable symbols;
+
+    // drive the nested rules with an explicit stack instead of recursion
+    private boolean explicitStack = false;
+    private ExplicitStackEngine explicitStackEngine;
+
+    // resolves the includes and declares the names of the libraries, null when includes are only checked
+    private LibraryResolver libraries;
+
+    // validate the top level statements of a large main block in chunks on the common ForkJoin pool
+    private boolean parallel = false;
+
+    // validate with the LL(1) table generated from the grammar instead of the hand written rules
+    private boolean tableDriven = false;
+    private TableDrivenEngine tableDrivenEngine;
+
+    // the tree built while parsing, null when the parser only validates
+    private boolean buildAst = false;
+    AstArena ast;
+    // the node built by the last successful rule, -1 for a rule that builds nothing
+    int lastNode = -1;
+
+    // counts and times the rules of every parse, null unless profiling is on
+    final ParseProfiler profiler = ParseProfiler.ENABLED ? new ParseProfiler() : null;
+
+
+    public RecursiveDescentParser() {
+        this(new TokenStream("", 0), new SymbolTable());
+    }
+
+    public RecursiveDescentParser(CharSequence code) {
+        this();
+        reset(code);
+    }
+
+    /**
+     * a parser for a chunk of the main block, it reads the tokens and the declared names of the parser it works
+     * for and changes neither
+     *
+     * @param tokens
+     * @param symbols
+     */
+    private RecursiveDescentParser(TokenStream tokens, SymbolTable symbols) {
+        this.tokens = tokens;
+        this.symbols = symbols;
     }
 
     /**
-     * increment our code pointer by specific value
+     * prepare the parser for a new code, the token arrays, the error stack and the names table
+     * are cleared but kept so a parser can be reused for many inputs
      *
-     * @param length
+     * @param code
+     * @return RecursiveDescentParser this parser
      */
-    private void next(int length) {
-       codePointer += length;
+    public RecursiveDescentParser reset(CharSequence code) {
+        long start = 0;
+        if (ParseProfiler.ENABLED) {
+            profiler.start(code.length());
+            start = profiler.enter(ParseProfiler.Rule.TOKENIZE);
+        }
+        new Lexer(code).tokenize(tokens);
+        if (ParseProfiler.ENABLED) {
+            profiler.exit(ParseProfiler.Rule.TOKENIZE, start);
+            profiler.scanned(code.length());
+        }
+        restart(code);
+        return this;
     }
 
+    /**
+     * drop the code of the last parse, its tokens and its names, so a kept parser doesn't hold on to it. unlike
+     * {@link #reset} this starts no parse, the profile of the last parse stays readable
+     */
+    void clear() {
+        tokens.reset("");
+        restart("");
+    }
 
     /**
-     * @param word
-     * @return boolean
-     * to find if our code at specific index match a certain string
+     * @param code the code the tokens were read from
      */
-    private boolean matchString(String word) {
-        try {
-            return code.substring(codePointer, codePointer + word.length()).equals(word);
-        } catch (StringIndexOutOfBoundsException e) {
-            return false;
+    private void restart(CharSequence code) {
+        tokenPointer = 0;
+        currentVarType = null;
+        failureCode = -1;
+        diagnostics.clear();
+        skipEndsCleared = false;
+        symbols.reset(code);
+        ast = null;
+        lastNode = -1;
+    }
+
+    /**
+     * parse the nested rules (blocks, statements and expressions) with an explicit stack on the heap instead of
+     * the Java call stack, so arbitrarily deep nesting doesn't need a bigger thread stack. the result is the
+     * same as the recursive parse
+     *
+     * @param explicitStack
+     * @return RecursiveDescentParser this parser
+     */
+    public RecursiveDescentParser setExplicitStack(boolean explicitStack) {
+        this.explicitStack = explicitStack;
+        if (explicitStack && explicitStackEngine == null) {
+            explicitStackEngine = new ExplicitStackEngine(this);
         }
+        return this;
     }
 
     /**
-     * check if a given string match a regex
+     * resolve the  #include<name>;  of a code with the resolver and declare the consts and vars of the
+     * libraries for the code, an include that isn't found or whose library has errors is an error. without a
+     * resolver an include is only checked for its syntax. the table driven engine doesn't resolve includes
      *
-     * @param target
-     * @param regex
-     * @return boolean
+     * @param libraries null to only check the syntax
+     * @return RecursiveDescentParser this parser
      */
-    private boolean matchRegex(String target, String regex) {
-        return Pattern.compile(regex).matcher(target).matches();
+    public RecursiveDescentParser setLibraries(LibraryResolver libraries) {
+        this.libraries = libraries;
+        return this;
     }
 
     /**
-     * get our code from current pointer until specific token occurs
+     * validate the top level statements of a large main block in chunks in parallel on the common ForkJoin pool.
+     * the declarations are parsed first and the names are only read after them, so a statement depends on
+     * nothing but its own tokens. a scan of the token kinds splits the block after a ; outside of any braces
+     * and if statements, the chunks are parsed by their own parsers and their errors are merged in source
+     * order. the result is the same as the sequential parse: a chunk that doesn't end where the next one starts
+     * or that reaches the error cap is parsed again sequentially from its start on.
      *
-     * @param token
-     * @return Strin
+     * only for validation with the recursive rules, it is skipped when the tree is built, with the explicit stack
+     * and when the pool has a single thread
+     *
+     * @param parallel
+     * @return RecursiveDescentParser this parser
      */
-    private String getBeforeToken(String token) {
-        try {
-            return code.substring(codePointer, code.substring(codePointer).indexOf(token) + codePointer);
-        } catch (StringIndexOutOfBoundsException e) {
-            return "";
+    public RecursiveDescentParser setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * parse with the loop of {@link TableDrivenEngine} over the LL(1) table generated from the grammar instead
+     * of the hand written rules. it accepts the same codes, but it only validates: no tree is built, it stops at
+     * the first error whatever {@link #setMaxErrors} says and the error can be reported by another rule than
+     * the one of the recursive parse, at the same token
+     *
+     * @param tableDriven
+     * @return RecursiveDescentParser this parser
+     */
+    public RecursiveDescentParser setTableDriven(boolean tableDriven) {
+        this.tableDriven = tableDriven;
+        if (tableDriven && tableDrivenEngine == null) {
+            tableDrivenEngine = new TableDrivenEngine(this);
         }
+        return this;
     }
 
     /**
-     * get String from our code from current pointer until we reach a certain token(string)
+     * the most errors reported by one parse. with the default of 1 the parse stops at the first error,
+     * above it the parser recovers from a failed statement or declaration by skipping to the next
+     * ; } else endif or declaration keyword and goes on, so all the independent errors are found in one pass
      *
-     * @param tokens
-     * @return String
+     * @param maxErrors
+     * @return RecursiveDescentParser this parser
      */
-    private String getBeforeTokens(Set<String> tokens) {
-        List<Character> list = new ArrayList<>();
-        int tempIndex = codePointer;
-        while (codePointer < code.length()) {
-            for (String token : tokens) {
-                if (matchString(token)) {
-                    codePointer = tempIndex;
-                    return list.stream().map(String::valueOf).collect(Collectors.joining());
-                }
-            }
-            list.add(code.charAt(codePointer));
-            next(1);
+    public RecursiveDescentParser setMaxErrors(int maxErrors) {
+        this.maxErrors = Math.max(1, maxErrors);
+        return this;
+    }
+
+    /**
+     * turn building the abstract syntax tree on or off, it is off by default so validation only callers
+     * pay nothing for it
+     *
+     * @param buildAst
+     * @return RecursiveDescentParser this parser
+     */
+    public RecursiveDescentParser setBuildAst(boolean buildAst) {
+        this.buildAst = buildAst;
+        return this;
+    }
+
+    /**
+     * @return int the number of tokens the reused token arrays can hold
+     */
+    int tokenCapacity() {
+        return tokens.capacity();
+    }
+
+    /**
+     * move our token pointer to the next token
+     */
+    void next() {
+        tokenPointer++;
+    }
+
+    /**
+     * @param kind
+     * @return boolean
+     * to find if the token at our pointer is of a certain kind
+     */
+    boolean match(TokenKind kind) {
+        return tokens.kind(tokenPointer) == kind;
+    }
+
+    /**
+     * @param kinds mask of token kinds built once by {@link TokenKind#maskOf}
+     * @return boolean
+     * to find if the token at our pointer is one of a set of kinds
+     */
+    boolean match(long kinds) {
+        return tokens.kindIn(tokenPointer, kinds);
+    }
+
+    /**
+     * the symbol id of the name at our pointer, looked up without copying its text
+     *
+     * @return int the id, -1 when the name isn't declared
+     */
+    int symbolAt() {
+        if (ParseProfiler.ENABLED) {
+            profiler.scanned(tokens.end(tokenPointer) - tokens.start(tokenPointer));
         }
-        codePointer = tempIndex;
-        if (codePointer >= code.length()) return "";
-        return list.stream().map(String::valueOf).collect(Collectors.joining());
+        return symbols.find(tokens.start(tokenPointer), tokens.end(tokenPointer));
+    }
+
+    /**
+     * @param symbol
+     * @return VarType the var type the name was declared with
+     */
+    VarType typeOf(int symbol) {
+        return VAR_TYPES[symbols.type(symbol)];
     }
 
     /**
-     * used to get the last parameter of statement from the code
+     * declare the name of the token at our pointer with the current var type
      *
-     * @return String
+     * @param isConst
+     * @return int the symbol id of the name
      */
-    private String getStatementLastParameter() {
-        return getBeforeTokens(new HashSet<>(Tokens.END_STATEMENT));
+    int declareName(boolean isConst) {
+        return symbols.add(tokens.start(tokenPointer), tokens.end(tokenPointer), (byte) currentVarType.ordinal(),
+                isConst);
     }
 
     /**
-     * used to get the factor value of the equation from the code
+     * append an AST node for the token at our pointer
      *
-     * @return String
+     * @param kind
+     * @param symbol
+     * @return int the node
      */
-    private String getEquationFactor() {
-        return getBeforeTokens(new HashSet<>(Tokens.FACTOR_SPLITTERS));
+    int node(AstKind kind, int symbol) {
+        return ast.add(kind, tokens.start(tokenPointer), tokens.end(tokenPointer), symbol);
     }
 
-    private boolean isNameExist(String name) {
-        return userDefindNames.containsKey(name);
+    /**
+     * end the span of a node after the last token we consumed
+     *
+     * @param node
+     */
+    void close(int node) {
+        ast.setEnd(node, tokens.end(tokenPointer - 1));
     }
 
-    private boolean isNameAvailable(String name) {
-        return !userDefindNames.containsKey(name);
+    /**
+     * append an operator node over two operands
+     *
+     * @param operator
+     * @param left
+     * @param right
+     * @return int the node
+     */
+    int operator(TokenKind operator, int left, int right) {
+        int node = ast.add(AstKind.ofOperator(operator), ast.start(left), ast.end(right), -1);
+        ast.addChild(node, left);
+        ast.addChild(node, right);
+        return node;
     }
 
-    private boolean isReservedWord(String name) {
-        return Tokens.RESERVED_WORDS.contains(name);
+    /**
+     * link the node of the last rule under a parent, an EMPTY node stands in when the rule built nothing
+     *
+     * @param parent
+     */
+    void addLastNode(int parent) {
+        if (lastNode < 0) {
+            lastNode = node(AstKind.EMPTY, -1);
+            ast.setEnd(lastNode, ast.start(lastNode));
+        }
+        ast.addChild(parent, lastNode);
     }
 
     /**
-     * method to print the error stack
+     * method to report an error at the current token, only the first error of a failure is kept since the
+     * rules it fails through only wrap it. nothing is built here, the text is rendered by {@link Diagnostics}
      *
      * @param error
      */
-    private void error(String error) {
-        errorStack.add(error);
+    void error(ErrorCode error) {
+        if (failureCode < 0) {
+            failureCode = error.ordinal();
+            failureToken = tokenPointer;
+        }
+    }
+
+    /**
+     * move the error where the current failure started to the reported errors
+     */
+    private void keepFailure() {
+        diagnostics.add(ErrorCode.VALUES[failureCode], tokens.start(failureToken), tokens.line(failureToken),
+                tokens.column(failureToken));
+        failureCode = -1;
+    }
+
+    /**
+     * keep the error of a failed rule and let the parse go on, as long as the error cap allows it
+     *
+     * @return boolean false when the failure has to go up as usual
+     */
+    private boolean recover() {
+        if (diagnostics.size() + 1 >= maxErrors) {
+            return false;
+        }
+        keepFailure();
+        return true;
+    }
+
+    /**
+     * move our pointer forward until a token of the given kinds or the end of the code
+     *
+     * @param kinds
+     */
+    private void skipUntil(long kinds) {
+        while (!match(kinds) && !match(END_OF_CODE)) {
+            next();
+        }
+    }
+
+    /**
+     * recover from a failed statement by skipping the whole statement from its start, nested blocks and
+     * if statements are skipped as a unit and the skip stops before the ; or } that ends the statement
+     *
+     * @param start the token the statement started at
+     * @return boolean false when the failure has to go up as usual
+     */
+    boolean recoverStatement(int start) {
+        if (!recover()) {
+            return false;
+        }
+        int memoSize = Math.min(skipLimit, tokens.size()) - skipBase;
+        if (!skipEndsCleared) {
+            if (skipEnds.length < memoSize) {
+                skipEnds = new int[memoSize];
+            } else {
+                Arrays.fill(skipEnds, 0, memoSize, 0);
+            }
+            skipEndsCleared = true;
+        }
+        tokenPointer = start;
+        int depth = 0;
+        boolean strayEndif = false;
+        while (!match(END_OF_CODE)) {
+            if (depth > 0 && tokenPointer > start) {
+                // a statement inside this one skipped before: its tokens never take our depth back to 0, so we
+                // stop where it stopped. not for a statement that skipped a stray endif, it would close one of ours
+                int memo = tokenPointer - skipBase;
+                int end = memo < memoSize ? skipEnds[memo] : 0;
+                if (ParseProfiler.ENABLED) {
+                    profiler.memo(end > 0);
+                }
+                if (end > 0) {
+                    tokenPointer = end - 1;
+                    if (match(END_OF_CODE)) {
+                        break;
+                    }
+                }
+            }
+            if (match(TokenKind.OPEN_BRACE) || match(TokenKind.IF)) {
+                depth++;
+            } else if (depth > 0 && (match(TokenKind.CLOSE_BRACE) || match(TokenKind.ENDIF))) {
+                depth--;
+            } else if (depth == 0 && (match(TokenKind.SEMICOLON) || match(TokenKind.CLOSE_BRACE))) {
+                break;
+            } else if (depth == 0 && match(TokenKind.ENDIF)) {
+                strayEndif = true;
+            }
+            // a stray else or endif can't start a statement so it is skipped with the rest
+            next();
+        }
+        if (!strayEndif && start - skipBase < memoSize) {
+            skipEnds[start - skipBase] = Math.min(tokenPointer, tokens.size() - 1) + 1;
+        }
+        if (tokenPointer == start && !match(END_OF_CODE)) {
+            next();
+        }
+        return true;
+    }
+
+    /**
+     * @return boolean true when our pointer reached the end of the code
+     */
+    boolean atEndOfCode() {
+        return match(END_OF_CODE);
+    }
+
+    /**
+     * the explicit stack counts and times its frames like the rules they stand for. the table driven engine
+     * only has the rules that are non-terminals of its grammar, the assign and in/out statements are
+     * alternatives of the statement and the declarations a list of them
+     *
+     * @return ParseProfile the counts of the last parse, null unless profiling is on
+     */
+    public ParseProfile getProfile() {
+        return ParseProfiler.ENABLED ? profiler.profile() : null;
     }
 
     /**
      * the method we should call to start parsing the code
+     *
+     * @return ParseResult
      */
-    public void parse() {
-        if (program()) {
-            System.out.println("valid syntax");
-        } else {
-            System.out.println("invalid syntax");
-//            Collections.reverse(errorStack);
-            // print the first log of the occurred error
-            System.out.println(errorStack.get(0));
+    public ParseResult parse() {
+        long startTime = System.nanoTime();
+        if (buildAst && !tableDriven) {
+            ast = new AstArena(tokens.size() / 2);
+        }
+        boolean valid;
+        try {
+            valid = tableDriven ? tableDrivenEngine.program() : program();
+        } catch (StackOverflowError e) {
+            // too deep for the recursive rules, the explicit stack mode has no such limit
+            failureCode = -1;
+            error(ErrorCode.NESTED_TOO_DEEPLY);
+            valid = false;
         }
+        if (!valid && failureCode >= 0) {
+            keepFailure();
+        }
+        valid = valid && diagnostics.size() == 0;
+        Diagnostics errors = valid ? Diagnostics.EMPTY : diagnostics.copy();
+        if (ParseProfiler.ENABLED) {
+            profiler.finish(tokens.size(), valid);
+        }
+        AstArena tree = null;
+        if (valid && ast != null) {
+            ast.trim();
+            tree = ast;
+        }
+        ast = null;
+        return new ParseResult(valid, errors, tokens.getSource().length(), tokens.size(), symbols.size(),
+                System.nanoTime() - startTime, tree, tree != null ? symbols.copy() : null);
     }
 
     /**
-     * non-terminal function:  body   $
+     * parse the code as a library:  lib-decl   declarations   $ , see {@link LibraryResolver}
+     *
+     * @return ParseResult with the declared names of the library and of the libraries it includes, no tree
+     */
+    ParseResult parseLibrary() {
+        long startTime = System.nanoTime();
+        boolean valid = library();
+        if (!valid && failureCode >= 0) {
+            keepFailure();
+        }
+        valid = valid && diagnostics.size() == 0;
+        Diagnostics errors = valid ? Diagnostics.EMPTY : diagnostics.copy();
+        if (ParseProfiler.ENABLED) {
+            profiler.finish(tokens.size(), valid);
+        }
+        return new ParseResult(valid, errors, tokens.getSource().length(), tokens.size(), symbols.size(),
+                System.nanoTime() - startTime, null, symbols.copy());
+    }
+
+    /**
+     * non-terminal function:  lib-decl   declarations   $
      *
      * @return boolean
      */
-    private boolean program() {
-        if (body()) {
-            if (code.substring(codePointer).equals(Tokens.END_OF_FILE)) {
+    private boolean library() {
+        if (!libDecl()) {
+            error(ErrorCode.LIBRARIES);
+            return false;
+        }
+        if (!declaration()) {
+            error(ErrorCode.VARIABLES);
+            return false;
+        }
+        if (match(TokenKind.END_OF_FILE)) {
+            next();
+            if (match(TokenKind.EOF)) {
                 return true;
             }
+            error(ErrorCode.TEXT_AFTER_END_OF_FILE);
+        } else {
+            error(ErrorCode.MISSING_END_OF_FILE);
         }
         return false;
     }
 
     /**
-     * non-terminal function: lib-decl    main ()   declarations   block
+     * parse again only some top level statements of the main block of an edited code, with the names of the
+     * last parse. the declarations must be the same as in the last parse. the validity of a statement doesn't
+     * depend on anything else before it, a statement only uses the declared names and every assignment sets its
+     * own var type
+     *
+     * @param code
+     * @param from the offset of the first char of a statement
+     * @param to   the offset of the first char of the statement after them, or of the } of the main block
+     * @param last true when the } of the main block follows, else the statements have to end with a ;
+     * @return AstArena a tree whose root holds the statements, or null when the range isn't valid on its own and
+     * the whole code has to be parsed again
+     */
+    AstArena reparseStatements(CharSequence code, int from, int to, boolean last) {
+        long start = 0;
+        if (ParseProfiler.ENABLED) {
+            profiler.start(to - from);
+            start = profiler.enter(ParseProfiler.Rule.TOKENIZE);
+        }
+        new Lexer(code, from, to).tokenize(tokens);
+        if (ParseProfiler.ENABLED) {
+            profiler.exit(ParseProfiler.Rule.TOKENIZE, start);
+            profiler.scanned(to - from);
+        }
+        symbols.rebase(code);
+        tokenPointer = 0;
+        currentVarType = null;
+        failureCode = -1;
+        diagnostics.clear();
+        skipEndsCleared = false;
+        ast = new AstArena(tokens.size() / 2);
+        lastNode = -1;
+        int eof = tokens.size() - 1;
+        boolean valid;
+        try {
+            valid = stmtList(ast.add(AstKind.BLOCK, from, to, -1), eof) && tokenPointer == eof
+                    && diagnostics.size() == 0 && (last || eof > 0 && tokens.kind(eof - 1) == TokenKind.SEMICOLON);
+        } catch (StackOverflowError e) {
+            valid = false;
+        }
+        if (ParseProfiler.ENABLED) {
+            profiler.finish(tokens.size(), valid);
+        }
+        AstArena tree = valid ? ast : null;
+        ast = null;
+        if (tree != null) {
+            tree.trim();
+        }
+        return tree;
+    }
+
+    /**
+     * non-terminal function:  body   $
      *
      * @return boolean
      */
-    private boolean body() {
-        if (libDecl()) {
-            if (matchString(Tokens.MAIN)) {
-                next(Tokens.MAIN.length());
-                if (declaration()) {
-                    if (block()) {
+    private boolean program() {
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.PROGRAM) : 0;
+        try {
+            if (ast != null) {
+                lastNode = node(AstKind.PROGRAM, -1);
+            }
+            if (body()) {
+                if (match(TokenKind.END_OF_FILE)) {
+                    next();
+                    if (match(TokenKind.EOF)) {
+                        if (ast != null) {
+                            close(ast.root());
+                        }
                         return true;
-                    } else {
-                        error("error in the body declaration");
                     }
+                    error(ErrorCode.TEXT_AFTER_END_OF_FILE);
                 } else {
-                    error("error in the variables declaration");
+                    error(ErrorCode.MISSING_END_OF_FILE);
+                }
+            }
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.PROGRAM, start);
+            }
+        }
+    }
+
+    /**
+     * non-terminal function: lib-decl    main ()   declarations   block
+     *
+     * @return boolean
+     */
+    private boolean body() {
+        if (!libDecl()) {
+            error(ErrorCode.LIBRARIES);
+            return false;
+        }
+        if (!mainDecl()) {
+            error(ErrorCode.MAIN);
+            if (!recover()) {
+                return false;
+            }
+            skipUntil(DECLARATION_SYNC);
+        }
+        if (!declaration()) {
+            error(ErrorCode.VARIABLES);
+            return false;
+        }
+        boolean inChunks = parallel && !explicitStack && ast == null && tokens.size() >= PARALLEL_MIN_TOKENS
+                && ForkJoinPool.getCommonPoolParallelism() > 1;
+        if (!(inChunks ? parallelBlock() : explicitStack ? explicitStackEngine.block() : block())) {
+            error(ErrorCode.BODY);
+            return false;
+        }
+        if (ast != null) {
+            ast.addChild(ast.root(), lastNode);
+        }
+        return true;
+    }
+
+    /**
+     * terminal function: main ()
+     *
+     * @return boolean
+     */
+    private boolean mainDecl() {
+        if (match(TokenKind.MAIN)) {
+            next();
+            if (match(TokenKind.OPEN_PARENTHESES)) {
+                next();
+                if (match(TokenKind.CLOSE_PARENTHESE)) {
+                    next();
+                    return true;
                 }
-            } else {
-                error("error in the main declaration");
             }
-        } else {
-            error("error in the libraries declaration");
         }
         return false;
     }
@@ -230,14 +729,71 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean libDecl() {
-        String libS = getBeforeToken(Tokens.MAIN);
-        if (matchRegex(libS, Rejexes.LIBRARIES)) {
-            next(libS.length());
-            return true;
-        } else {
-            error("error in the libraries declaration");
+        // the lexer recognizes a whole  # include < name > ;  as one LIBRARY token
+        int first = tokenPointer;
+        while (match(TokenKind.LIBRARY)) {
+            if (ast != null) {
+                ast.addChild(ast.root(), node(AstKind.LIBRARY, -1));
+            }
+            next();
         }
-        return false;
+        if (libraries != null && !include(first)) {
+            return false;
+        }
+        while (match(TokenKind.HASH)) {
+            error(ErrorCode.LIBRARY);
+            if (!recover()) {
+                return false;
+            }
+            next();
+            skipUntil(LIBRARY_SYNC);
+            first = tokenPointer;
+            while (match(TokenKind.LIBRARY)) {
+                next();
+            }
+            if (libraries != null && !include(first)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * load the libraries of the LIBRARY tokens from first up to our pointer, all at once so independent
+     * libraries load in parallel, and declare their names in include order
+     *
+     * @param first
+     * @return boolean false when an include failed and the failure has to go up
+     */
+    private boolean include(int first) {
+        int end = tokenPointer;
+        List<CompletableFuture<Library>> loads = new ArrayList<>(end - first);
+        for (int i = first; i < end; i++) {
+            loads.add(libraries.load(LibraryResolver.nameOf(tokens.getSource(), tokens.start(i), tokens.end(i))));
+        }
+        for (int i = first; i < end; i++) {
+            Library library = null;
+            ErrorCode failure;
+            try {
+                library = loads.get(i - first).join();
+                failure = library.getFailure();
+            } catch (CompletionException e) {
+                // the load of the library threw, a StackOverflowError on a deeply nested library for one
+                failure = ErrorCode.LIBRARY_INVALID;
+            }
+            if (failure == null && symbols.include(library.getExports()) >= 0) {
+                failure = ErrorCode.LIBRARY_CONFLICT;
+            }
+            if (failure != null) {
+                tokenPointer = i;
+                error(failure);
+                tokenPointer = end;
+                if (!recover()) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -246,46 +802,83 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean declaration() {
-        while (matchString(Tokens.CONST)) {
-            next(Tokens.CONST.length());
-            if (!constDecl()) {
-                error("error in the const declaration");
-                return false;
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.DECLARATION) : 0;
+        try {
+            while (match(TokenKind.CONST)) {
+                int declaration = ast != null ? node(AstKind.CONST, -1) : -1;
+                next();
+                if (!constDecl(declaration)) {
+                    error(ErrorCode.CONST);
+                    if (!recover()) {
+                        return false;
+                    }
+                    skipDeclaration();
+                }
             }
-        }
-        while (matchString(Tokens.VAR)) {
-            next(Tokens.VAR.length());
-            if (!varDecl()) {
-                error("error in the vars declaration");
-                return false;
+            while (match(TokenKind.VAR)) {
+                int declaration = ast != null ? node(AstKind.VAR, -1) : -1;
+                next();
+                if (!varDecl(declaration)) {
+                    error(ErrorCode.VARS);
+                    if (!recover()) {
+                        return false;
+                    }
+                    skipDeclaration();
+                }
+            }
+            return true;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.DECLARATION, start);
             }
         }
-        return true;
+    }
+
+    /**
+     * recover from a failed declaration by skipping past its ; or to the next declaration or the block
+     */
+    private void skipDeclaration() {
+        skipUntil(DECLARATION_SYNC);
+        if (match(TokenKind.SEMICOLON)) {
+            next();
+        }
     }
 
 
     /**
      * non-terminal function: ( const data-type name= value ; )*
      *
+     * @param declaration the CONST node, -1 when the tree is not built
      * @return boolean
      */
-    private boolean constDecl() {
+    private boolean constDecl(int declaration) {
         if (dataType()) {
-            String name = getBeforeToken(Tokens.EQUAL);
-            if (matchRegex(name, Rejexes.NAME) && !isReservedWord(name) && isNameAvailable(name)) {
-                next(name.length());
-                userDefindNames.put(name, currentVarType);
-                next(Tokens.EQUAL.length());
-                if (value()) {
-                    return true;
+            if (match(TokenKind.IDENTIFIER) && symbolAt() < 0) {
+                int symbol = declareName(true);
+                if (ast != null) {
+                    ast.addChild(declaration, node(AstKind.NAME, symbol));
+                }
+                next();
+                if (match(TokenKind.EQUAL)) {
+                    next();
+                    if (value()) {
+                        if (ast != null) {
+                            ast.addChild(declaration, lastNode);
+                            close(declaration);
+                            ast.addChild(ast.root(), declaration);
+                        }
+                        return true;
+                    } else {
+                        error(ErrorCode.CONST_VALUE);
+                    }
                 } else {
-                    error("error in the value of consts declaration");
+                    error(ErrorCode.MISSING_CONST_EQUAL);
                 }
             } else {
-                error("error in the name of consts declaration");
+                error(ErrorCode.CONST_NAME);
             }
         } else {
-            error("error in the datatype of consts declaration");
+            error(ErrorCode.CONST_DATATYPE);
         }
         return false;
     }
@@ -293,17 +886,22 @@ public class RecursiveDescentParser {
     /**
      * non-terminal function:  (  var    data-type    name-list   ;   )*
      *
+     * @param declaration the VAR node, -1 when the tree is not built
      * @return boolean
      */
-    public boolean varDecl() {
+    private boolean varDecl(int declaration) {
         if (dataType()) {
-            if (nameList()) {
+            if (nameList(declaration)) {
+                if (ast != null) {
+                    close(declaration);
+                    ast.addChild(ast.root(), declaration);
+                }
                 return true;
             } else {
-                error("error in the name list of vars declaration");
+                error(ErrorCode.VAR_NAME_LIST);
             }
         } else {
-            error("error in the datatype of vars declaration");
+            error(ErrorCode.VAR_DATATYPE);
         }
         return false;
     }
@@ -315,148 +913,406 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean dataType() {
-        if (matchString(Tokens.INT)) {
-            next(Tokens.INT.length());
+        if (match(TokenKind.INT)) {
+            next();
             currentVarType = VarType.Int;
             return true;
-        } else if (matchString(Tokens.FLOAT)) {
-            next(Tokens.FLOAT.length());
+        } else if (match(TokenKind.FLOAT)) {
+            next();
             currentVarType = VarType.Float;
             return true;
         }
-        error("error in the datatype declaration");
+        error(ErrorCode.DATATYPE);
         return false;
     }
 
     /**
      * non-terminal function:  name   (  ,   name  )*
      *
+     * @param declaration the VAR node, -1 when the tree is not built
      * @return boolean
      */
-    private boolean nameList() {
-        String names = getBeforeToken(Tokens.SEMICOLON);
-        int numberOfCommas = names.split(",").length - 1;
-        for (String name : names.split(",")) {
-            if (matchRegex(name, Rejexes.NAME) && !isReservedWord(name) && isNameAvailable(name)) {
-                next(name.length());
-                userDefindNames.put(name, currentVarType);
-                if (numberOfCommas > 0) {
-                    next(1);
-                    numberOfCommas--;
+    private boolean nameList(int declaration) {
+        while (true) {
+            if (match(TokenKind.IDENTIFIER) && symbolAt() < 0) {
+                int symbol = declareName(false);
+                if (ast != null) {
+                    ast.addChild(declaration, node(AstKind.NAME, symbol));
                 }
+                next();
             } else {
                 return false;
             }
+            if (!match(TokenKind.COMMA)) {
+                break;
+            }
+            next();
         }
-        next(Tokens.SEMICOLON.length());
-        return true;
+        if (match(TokenKind.SEMICOLON)) {
+            next();
+            return true;
+        }
+        return false;
     }
 
     /**
-     * non-terminal function:   “float-number”   |  “int-number”
+     * non-terminal function:   “float-number”   |  “int-number”  followed by the ; of the declaration
      *
      * @return boolean
      */
     private boolean value() {
-        String value = getBeforeToken(Tokens.SEMICOLON);
+        int start = tokenPointer;
+        NumberScanner.Kind value = signedNumber();
+        if (value == NumberScanner.Kind.INT_OVERFLOW) {
+            error(ErrorCode.INT_OUT_OF_RANGE);
+            return false;
+        }
         if (currentVarType == VarType.Int) {
-            if (StringValidation.isInteger(value)) {
-                next(value.length());
-                next(Tokens.SEMICOLON.length());
-                return true;
+            if (value != NumberScanner.Kind.INT) {
+                return false;
             }
-        } else if (StringValidation.isFloat(value)) {
-                next(value.length());
-                next(1);
-                return true;
+        } else if (value != NumberScanner.Kind.INT && value != NumberScanner.Kind.FLOAT) {
+            return false;
+        }
+        next();
+        if (ast != null) {
+            lastNode = literal(value, start);
+        }
+        if (match(TokenKind.SEMICOLON)) {
+            next();
+            return true;
         }
         return false;
     }
 
+    /**
+     * read an optional sign followed by a number token and scan it, the pointer is left on the number token
+     * and the scanned value is kept in the number scanner
+     *
+     * @return NumberScanner.Kind  NONE if there is no number
+     */
+    private NumberScanner.Kind signedNumber() {
+        boolean negative = false;
+        if (match(ADD_OPERATORS) && tokens.kind(tokenPointer + 1) == TokenKind.NUMBER) {
+            negative = match(TokenKind.MINUS);
+            next();
+        }
+        if (!match(TokenKind.NUMBER)) {
+            return NumberScanner.Kind.NONE;
+        }
+        if (ParseProfiler.ENABLED) {
+            profiler.scanned(tokens.end(tokenPointer) - tokens.start(tokenPointer));
+        }
+        return numbers.scan(tokens.getSource(), tokens.start(tokenPointer), tokens.end(tokenPointer), negative);
+    }
+
+    /**
+     * append a literal node spanning from a token to the last token we consumed
+     *
+     * @param value
+     * @param firstToken
+     * @return int the node
+     */
+    private int literal(NumberScanner.Kind value, int firstToken) {
+        AstKind kind = value == NumberScanner.Kind.INT ? AstKind.INT_LITERAL : AstKind.FLOAT_LITERAL;
+        return ast.add(kind, tokens.start(firstToken), tokens.end(tokenPointer - 1), -1);
+    }
+
     /**
      * non-terminal function:  {    stmt-list    }
      *
      * @return boolean
      */
-    private boolean block() {
-        if (matchString(Tokens.OPEN_BRACE)) {
-            next(Tokens.OPEN_BRACE.length());
-            if (stmtList()) {
-                if (matchString(Tokens.CLOSE_BRACE)) {
-                    next(Tokens.CLOSE_BRACE.length());
-                    return true;
+    boolean block() {
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.BLOCK) : 0;
+        try {
+            if (match(TokenKind.OPEN_BRACE)) {
+                int block = ast != null ? node(AstKind.BLOCK, -1) : -1;
+                next();
+                if (stmtList(block, Integer.MAX_VALUE)) {
+                    if (match(TokenKind.CLOSE_BRACE)) {
+                        next();
+                        if (ast != null) {
+                            close(block);
+                            lastNode = block;
+                        }
+                        return true;
+                    } else {
+                        error(ErrorCode.MISSING_CLOSE_BRACE);
+                    }
                 } else {
-                    error("missing } or there is wrong text before }");
+                    error(ErrorCode.STATEMENT_LIST);
+
                 }
             } else {
-                error("error in the statement list");
+                error(ErrorCode.MISSING_OPEN_BRACE);
+            }
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.BLOCK, start);
+            }
+        }
+    }
 
+    /**
+     * the main block like {@link #block} with its top level statements validated in chunks, see
+     * {@link #setParallel}
+     *
+     * @return boolean
+     */
+    private boolean parallelBlock() {
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.BLOCK) : 0;
+        try {
+            if (match(TokenKind.OPEN_BRACE)) {
+                next();
+                if (parallelStmtList()) {
+                    if (match(TokenKind.CLOSE_BRACE)) {
+                        next();
+                        return true;
+                    } else {
+                        error(ErrorCode.MISSING_CLOSE_BRACE);
+                    }
+                } else {
+                    error(ErrorCode.STATEMENT_LIST);
+                }
+            } else {
+                error(ErrorCode.MISSING_OPEN_BRACE);
+            }
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.BLOCK, start);
+            }
+        }
+    }
+
+    /**
+     * the top level statements of the main block from our pointer on, parsed in chunks in parallel. the errors
+     * of the chunks are taken in source order as long as every chunk ended where the next one starts and the
+     * error cap isn't reached, from the first chunk that breaks this on the rest is parsed sequentially
+     *
+     * @return boolean
+     */
+    private boolean parallelStmtList() {
+        int[] starts = chunkStarts(tokenPointer,
+                Math.max(CHUNK_TOKENS, tokens.size() / (ForkJoinPool.getCommonPoolParallelism() * 4)));
+        int count = starts.length;
+        RecursiveDescentParser[] chunks = new RecursiveDescentParser[count];
+        boolean[] valid = new boolean[count];
+        ForkJoinPool.commonPool().invoke(new ChunkTask(this, starts, chunks, valid, 0, count));
+
+        int chunk = 0;
+        for (; chunk < count; chunk++) {
+            RecursiveDescentParser parser = chunks[chunk];
+            if (ParseProfiler.ENABLED) {
+                profiler.add(parser.profiler);
+            }
+            if (!valid[chunk] || chunk + 1 < count && parser.tokenPointer != starts[chunk + 1]
+                    || diagnostics.size() + parser.diagnostics.size() >= maxErrors) {
+                break;
+            }
+            for (int i = 0; i < parser.diagnostics.size(); i++) {
+                diagnostics.add(parser.diagnostics.code(i), parser.diagnostics.offset(i), parser.diagnostics.line(i),
+                        parser.diagnostics.column(i));
+            }
+            tokenPointer = parser.tokenPointer;
+        }
+        if (chunk == count) {
+            return true;
+        }
+        if (ParseProfiler.ENABLED) {
+            for (int i = chunk + 1; i < count; i++) {
+                profiler.add(chunks[i].profiler);
+            }
+        }
+        tokenPointer = starts[chunk];
+        return stmtList(-1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * the tokens the chunks of the top level statements start at: the first token after a run of ; outside of
+     * any braces and if statements, counted like {@link #recoverStatement} counts them, so a statement the
+     * sequential parse skips after an error also ends at a chunk boundary
+     *
+     * @param from        the token after the { of the main block
+     * @param chunkTokens the least number of tokens of a chunk
+     * @return int[] from and the starts of the other chunks
+     */
+    private int[] chunkStarts(int from, int chunkTokens) {
+        int[] starts = new int[tokens.size() / chunkTokens + 2];
+        int count = 0;
+        starts[count++] = from;
+        int depth = 0;
+        for (int i = from; i < tokens.size(); i++) {
+            TokenKind kind = tokens.kind(i);
+            if (kind == TokenKind.OPEN_BRACE || kind == TokenKind.IF) {
+                depth++;
+            } else if (tokens.kindIn(i, END_OF_CODE) || depth == 0 && kind == TokenKind.CLOSE_BRACE) {
+                break;
+            } else if (depth > 0 && (kind == TokenKind.CLOSE_BRACE || kind == TokenKind.ENDIF)) {
+                depth--;
+            } else if (depth == 0 && kind == TokenKind.SEMICOLON && i + 1 - starts[count - 1] >= chunkTokens) {
+                while (tokens.kind(i + 1) == TokenKind.SEMICOLON) {
+                    i++;
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * parse one chunk of the main block on a parser of its own: chunk i runs from starts[i] to starts[i + 1],
+     * the last one to the end of the block. the range is split in halves until one chunk is left
+     */
+    private final static class ChunkTask extends RecursiveAction {
+
+        private final static long serialVersionUID = 1L;
+
+        private final RecursiveDescentParser parent;
+        private final int[] starts;
+        private final RecursiveDescentParser[] chunks;
+        private final boolean[] valid;
+        private final int from;
+        private final int to;
+
+        ChunkTask(RecursiveDescentParser parent, int[] starts, RecursiveDescentParser[] chunks, boolean[] valid,
+                  int from, int to) {
+            this.parent = parent;
+            this.starts = starts;
+            this.chunks = chunks;
+            this.valid = valid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(parent, starts, chunks, valid, from, middle),
+                        new ChunkTask(parent, starts, chunks, valid, middle, to));
+                return;
+            }
+            RecursiveDescentParser parser = new RecursiveDescentParser(parent.tokens, parent.symbols);
+            parser.maxErrors = parent.maxErrors;
+            parser.tokenPointer = starts[from];
+            parser.skipBase = starts[from];
+            parser.skipLimit = from + 1 < starts.length ? starts[from + 1] : Integer.MAX_VALUE;
+            chunks[from] = parser;
+            try {
+                valid[from] = parser.stmtList(-1, parser.skipLimit);
+            } catch (StackOverflowError e) {
+                // deeper than the stack of a pool thread, the sequential parse decides
+                valid[from] = false;
             }
-        } else {
-            error("missing { or there is wrong text before }");
         }
-        return false;
     }
 
     /**
      * non-terminal function:  statement (  ; statement   )*
      *
+     * @param block the BLOCK node, -1 when the tree is not built
+     * @param end   the token to stop at, a chunk of the main block ends before the end of the block
      * @return boolean
      */
-    private boolean stmtList() {
-        while (!matchString(Tokens.CLOSE_BRACE)) {
-            while (matchString(Tokens.SEMICOLON)) {
-                next(Tokens.SEMICOLON.length());
+    private boolean stmtList(int block, int end) {
+        while (tokenPointer < end && !match(TokenKind.CLOSE_BRACE)) {
+            while (match(TokenKind.SEMICOLON)) {
+                next();
+            }
+            int statementStart = tokenPointer;
+            boolean failed = !statement();
+            // an else or endif outside of an if statement is an empty statement that can't be skipped
+            failed = failed
+                    || (tokenPointer == statementStart && !match(TokenKind.CLOSE_BRACE) && !match(TokenKind.SEMICOLON));
+            if (failed) {
+                error(ErrorCode.STATEMENT);
+                if (!recoverStatement(statementStart)) {
+                    return false;
+                }
+                if (atEndOfCode()) {
+                    return true;
+                }
+                continue;
             }
-            if (!statement()) {
-                error("error in the statement declaration ");
+            if (ast != null && lastNode >= 0) {
+                ast.addChild(block, lastNode);
+            }
+            if (!separator(end)) {
                 return false;
             }
-            while (matchString(Tokens.SEMICOLON)) {
-                next(Tokens.SEMICOLON.length());
+            while (match(TokenKind.SEMICOLON)) {
+                next();
             }
         }
         return true;
     }
 
+    /**
+     * the statements of a list are separated by ;  only the } of the block, the end of a chunk or the end of
+     * the code may follow a statement without one. a missing ; is reported and the next statement is parsed as
+     * if it was there
+     *
+     * @param end the token the list stops at
+     * @return boolean false when the missing ; fails the statement list
+     */
+    boolean separator(int end) {
+        if (match(TokenKind.SEMICOLON) || match(TokenKind.CLOSE_BRACE) || match(END_OF_CODE) || tokenPointer >= end) {
+            return true;
+        }
+        error(ErrorCode.MISSING_SEMICOLON);
+        return recover();
+    }
+
     /**
      * non-terminal function:  ass-stmt |  inout-stmt   | if-stmt  | while-stmt |  block  |  @
      *
      * @return boolean
      */
     private boolean statement() {
-        // null statement
-        for(String token : Tokens.END_STATEMENT){
-            if(matchString(token)){
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.STATEMENT) : 0;
+        try {
+            lastNode = -1;
+            // null statement
+            if (match(END_STATEMENT)) {
                 return true;
             }
-        }
 
-        if (matchString(Tokens.OPEN_BRACE)) {
-            if (!block()) {
-                error("error in the block statement declaration ");
-                return false;
-            }
-        } else if (matchString(Tokens.IF)) {
-            if (!ifStatement()) {
-                error("error in the if statement declaration ");
-                return false;
-            }
-        } else if (matchString(Tokens.WHILE)) {
-            if (!whileStatement()) {
-                error("error in the while statement declaration ");
+            if (match(TokenKind.OPEN_BRACE)) {
+                if (!block()) {
+                    error(ErrorCode.BLOCK_STATEMENT);
+                    return false;
+                }
+            } else if (match(TokenKind.IF)) {
+                if (!ifStatement()) {
+                    error(ErrorCode.IF_STATEMENT);
+                    return false;
+                }
+            } else if (match(TokenKind.WHILE)) {
+                if (!whileStatement()) {
+                    error(ErrorCode.WHILE_STATEMENT);
+                    return false;
+                }
+            } else if (match(TokenKind.INPUT) || match(TokenKind.OUTPUT)) {
+                if (!inOutStatement()) {
+                    error(ErrorCode.IO_STATEMENT);
+                    return false;
+                }
+            } else if (!assignStatement()) {
+                error(ErrorCode.ASSIGN_STATEMENT);
                 return false;
             }
-        } else if (matchString(Tokens.INPUT) || matchString(Tokens.OUTPUT)) {
-            if (!inOutStatement()) {
-                error("error in the io statement declaration ");
-                return false;
+            return true;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.STATEMENT, start);
             }
-        } else if (!assignStatement()) {
-            error("error in the assign statement declaration ");
-            return false;
         }
-        return true;
     }
 
     /**
@@ -465,18 +1321,50 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean assignStatement() {
-        String name = getBeforeToken(Tokens.EQUAL);
-        if (matchRegex(name, Rejexes.NAME) && isNameExist(name)) {
-            next(name.length());
-            next(Tokens.EQUAL.length());
-            currentVarType = userDefindNames.get(name);
-            if (exp()) {
-                return true;
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.ASSIGN) : 0;
+        try {
+            if (assignTarget()) {
+                int assign = lastNode;
+                if (exp()) {
+                    if (ast != null) {
+                        ast.addChild(assign, lastNode);
+                        close(assign);
+                        lastNode = assign;
+                    }
+                    return true;
+                } else {
+                    error(ErrorCode.ASSIGN_EXPRESSION);
+                }
             } else {
-                error("error in the assign statement exp declaration ");
+                error(ErrorCode.ASSIGN_NAME);
             }
-        } else {
-            error("error in the assign statement name declaration ");
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.ASSIGN, start);
+            }
+        }
+    }
+
+    /**
+     * the  name =  part of the assign statement, the var type of the name becomes the current type
+     * and the ASSIGN node is left in lastNode
+     *
+     * @return boolean
+     */
+    boolean assignTarget() {
+        int symbol;
+        if (match(TokenKind.IDENTIFIER) && tokens.kind(tokenPointer + 1) == TokenKind.EQUAL
+                && (symbol = symbolAt()) >= 0) {
+            currentVarType = typeOf(symbol);
+            lastNode = -1;
+            if (ast != null) {
+                lastNode = node(AstKind.ASSIGN, -1);
+                ast.addChild(lastNode, node(AstKind.NAME, symbol));
+            }
+            next();
+            next();
+            return true;
         }
         return false;
     }
@@ -487,17 +1375,29 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean exp() {
-        if (term()) {
-            while (addOper()) {
-                next(1);
-                if (!term()) {
-                    error("error in the add operation declaration ");
-                    return false;
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.EXP) : 0;
+        try {
+            if (term()) {
+                while (addOper()) {
+                    TokenKind operator = tokens.kind(tokenPointer);
+                    int left = lastNode;
+                    next();
+                    if (!term()) {
+                        error(ErrorCode.ADD_OPERATION);
+                        return false;
+                    }
+                    if (ast != null) {
+                        lastNode = operator(operator, left, lastNode);
+                    }
                 }
+                return true;
+            }
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.EXP, start);
             }
-            return true;
         }
-        return false;
     }
 
     /**
@@ -506,26 +1406,38 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean term() {
-        if (factor()) {
-            while (mulOper()) {
-                next(1);
-                if (!factor()) {
-                    error("error in the mul operation declaration ");
-                    return false;
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.TERM) : 0;
+        try {
+            if (factor()) {
+                while (mulOper()) {
+                    TokenKind operator = tokens.kind(tokenPointer);
+                    int left = lastNode;
+                    next();
+                    if (!factor()) {
+                        error(ErrorCode.MUL_OPERATION);
+                        return false;
+                    }
+                    if (ast != null) {
+                        lastNode = operator(operator, left, lastNode);
+                    }
                 }
+                return true;
+            }
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.TERM, start);
             }
-            return true;
         }
-        return false;
     }
 
     /**
      * non-terminal function
-     * add-oper   +    |   -
+     * add-oper   +    |   -
      * @return boolean
      */
-    private boolean addOper() {
-        return (matchString("+") || matchString("-"));
+    boolean addOper() {
+        return match(ADD_OPERATORS);
     }
 
     /**
@@ -533,8 +1445,8 @@ public class RecursiveDescentParser {
      *
      * @return boolean
      */
-    private boolean mulOper() {
-        return (matchString("*") || matchString("/") || matchString("%"));
+    boolean mulOper() {
+        return match(MUL_OPERATORS);
     }
 
 
@@ -544,39 +1456,71 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean factor() {
-        if (matchString(Tokens.OPEN_PARENTHESES)) {
-            next(Tokens.OPEN_PARENTHESES.length());
-            if (!exp()) return false;
-            if (matchString(Tokens.CLOSE_PARENTHESE)) {
-                next(Tokens.CLOSE_PARENTHESE.length());
-                return true;
-            }
-        } else {
-            String factor = getEquationFactor();
-            if (factor.length() == 0) {
-                error("factor is missing or there is wrong text before factor");
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.FACTOR) : 0;
+        try {
+            if (match(TokenKind.OPEN_PARENTHESES)) {
+                next();
+                if (!exp()) return false;
+                if (match(TokenKind.CLOSE_PARENTHESE)) {
+                    next();
+                    return true;
+                }
+                error(ErrorCode.FACTOR_NAME);
                 return false;
             }
-            if (Character.isDigit(factor.charAt(0))) {
-                if (!StringValidation.isInteger(factor) && currentVarType == VarType.Int) {
-                    error("error in the factor value, non integer assigned to integer ");
-                    return false;
-                } else {
-                    if (StringValidation.isFloat(factor) || StringValidation.isInteger(factor)) {
-                        next(factor.length());
-                        return true;
+            return leafFactor();
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.FACTOR, start);
+            }
+        }
+    }
+
+    /**
+     * the non recursive alternatives of factor:  name  | value
+     *
+     * @return boolean
+     */
+    boolean leafFactor() {
+        if (match(TokenKind.NUMBER)) {
+            if (ParseProfiler.ENABLED) {
+                profiler.scanned(tokens.end(tokenPointer) - tokens.start(tokenPointer));
+            }
+            NumberScanner.Kind factor = numbers.scan(tokens.getSource(), tokens.start(tokenPointer),
+                    tokens.end(tokenPointer));
+            if (factor == NumberScanner.Kind.INT_OVERFLOW) {
+                error(ErrorCode.INT_OUT_OF_RANGE);
+                return false;
+            } else if (factor != NumberScanner.Kind.INT && currentVarType == VarType.Int) {
+                error(ErrorCode.FACTOR_NOT_INTEGER);
+                return false;
+            } else {
+                if (factor == NumberScanner.Kind.FLOAT || factor == NumberScanner.Kind.INT) {
+                    next();
+                    if (ast != null) {
+                        lastNode = literal(factor, tokenPointer - 1);
                     }
-                    error("error in the factor value, non number assigned to number ");
-                    return false;
+                    return true;
+                }
+                error(ErrorCode.FACTOR_NOT_NUMBER);
+                return false;
+            }
+        } else if (match(TokenKind.IDENTIFIER)) {
+            int symbol = symbolAt();
+            if (symbol >= 0) {
+                if (ast != null) {
+                    lastNode = node(AstKind.NAME, symbol);
                 }
-            } else if (isNameExist(factor)) {
-                next(factor.length());
+                next();
                 return true;
             } else {
-                error("name not exist");
+                error(ErrorCode.UNDECLARED_NAME);
             }
+        } else {
+            error(ErrorCode.MISSING_FACTOR);
+            return false;
         }
-        error("error in the factor name");
+        error(ErrorCode.FACTOR_NAME);
         return false;
     }
 
@@ -587,38 +1531,59 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean ifStatement() {
-        if (matchString(Tokens.IF)) {
-            next(Tokens.IF.length());
-            if (matchString(Tokens.OPEN_PARENTHESES)) {
-                next(Tokens.OPEN_PARENTHESES.length());
-                if (booleanExpresion()) {
-                    if (matchString(Tokens.CLOSE_PARENTHESE)) {
-                        next(Tokens.CLOSE_PARENTHESE.length());
-                        if (statement()) {
-                            if (elsePart()) {
-                                if (matchString(Tokens.ENDIF)) {
-                                    next(Tokens.ENDIF.length());
-                                    return true;
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.IF) : 0;
+        try {
+            if (match(TokenKind.IF)) {
+                int ifNode = ast != null ? node(AstKind.IF, -1) : -1;
+                next();
+                if (match(TokenKind.OPEN_PARENTHESES)) {
+                    next();
+                    if (booleanExpresion()) {
+                        if (ast != null) {
+                            ast.addChild(ifNode, lastNode);
+                        }
+                        if (match(TokenKind.CLOSE_PARENTHESE)) {
+                            next();
+                            if (statement()) {
+                                if (ast != null) {
+                                    addLastNode(ifNode);
+                                }
+                                if (elsePart()) {
+                                    if (ast != null) {
+                                        addLastNode(ifNode);
+                                    }
+                                    if (match(TokenKind.ENDIF)) {
+                                        next();
+                                        if (ast != null) {
+                                            close(ifNode);
+                                            lastNode = ifNode;
+                                        }
+                                        return true;
+                                    } else {
+                                        error(ErrorCode.MISSING_ENDIF);
+                                    }
                                 } else {
-                                    error("missing endif or there is wrong text before endif");
+                                    error(ErrorCode.ELSE);
                                 }
                             } else {
-                                error("error in the else");
+                                error(ErrorCode.IF);
                             }
                         } else {
-                            error("error in the if statement");
+                            error(ErrorCode.MISSING_CLOSE_PARENTHESE);
                         }
                     } else {
-                        error("missing ) or there is wrong text before )");
+                        error(ErrorCode.BOOLEAN_EXPRESSION);
                     }
                 } else {
-                    error("error in the boolean expression");
+                    error(ErrorCode.MISSING_OPEN_PARENTHESES);
                 }
-            } else {
-                error("missing ( or there is wrong text before (");
+            }
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.IF, start);
             }
         }
-        return false;
     }
 
     /**
@@ -626,29 +1591,66 @@ public class RecursiveDescentParser {
      *
      * @return boolean
      */
-    private boolean booleanExpresion() {
-        String parm1 = getBeforeTokens(Tokens.RELATIONAL_OPERATIONS);
-        // if we got a name with length > 0 then for sure one of the tokens exist
-        if (isNameExist(parm1) || StringValidation.isValue(parm1)) {
-            next(parm1.length());
-            next(1);
-            if (code.charAt(codePointer) == '=') {
-                next(1);
+    boolean booleanExpresion() {
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.BOOLEAN_EXPRESSION) : 0;
+        try {
+            if (nameValue()) {
+                if (match(RELATIONAL_OPERATIONS)) {
+                    TokenKind operator = tokens.kind(tokenPointer);
+                    int left = lastNode;
+                    next();
+                    if (nameValue()) {
+                        if (ast != null) {
+                            lastNode = operator(operator, left, lastNode);
+                        }
+                        return true;
+                    } else {
+                        error(ErrorCode.SECOND_PARAMETER);
+                    }
+                } else {
+                    error(ErrorCode.RELATIONAL_OPERATION);
+                }
+            } else {
+                error(ErrorCode.FIRST_PARAMETER);
+            }
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.BOOLEAN_EXPRESSION, start);
             }
-            String parm2 = getBeforeToken(Tokens.CLOSE_PARENTHESE);
-            if (isNameExist(parm2) || StringValidation.isValue(parm2)) {
-                next(parm2.length());
+        }
+    }
+
+    /**
+     * non-terminal function:  name  |  value
+     *
+     * @return boolean
+     */
+    private boolean nameValue() {
+        if (match(TokenKind.IDENTIFIER)) {
+            int symbol = symbolAt();
+            if (symbol >= 0) {
+                if (ast != null) {
+                    lastNode = node(AstKind.NAME, symbol);
+                }
+                next();
                 return true;
-            } else {
-                error("error in the second parameter");
             }
-        } else {
-            if (isNameExist(parm1) || StringValidation.isValue(parm1)) {
-                error("error in the RELATIONAL OPERATIONS ");
-            } else {
-                error("error in the first parameter");
+            return false;
+        }
+        int start = tokenPointer;
+        NumberScanner.Kind value = signedNumber();
+        if (value == NumberScanner.Kind.INT || value == NumberScanner.Kind.FLOAT) {
+            next();
+            if (ast != null) {
+                lastNode = literal(value, start);
             }
+            return true;
         }
+        if (value == NumberScanner.Kind.INT_OVERFLOW) {
+            error(ErrorCode.INT_OUT_OF_RANGE);
+        }
+        tokenPointer = start;
         return false;
     }
 
@@ -658,9 +1660,10 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean elsePart() {
-        if (matchString(Tokens.ELSE)) {
-            next(Tokens.ELSE.length());
-            if (statement()) {}
+        lastNode = -1;
+        if (match(TokenKind.ELSE)) {
+            next();
+            return statement();
         }
         return true;
     }
@@ -670,37 +1673,56 @@ public class RecursiveDescentParser {
      *
      * @return boolean
      */
-    private boolean inOutStatement() {
-        if (matchString(Tokens.INPUT)) {
-            next(Tokens.INPUT.length());
-            if (matchString(">>")) {
-                next(2);
-                String name = getStatementLastParameter();
-                if (isNameExist(name)) {
-                    next(name.length());
-                    return true;
+    boolean inOutStatement() {
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.IN_OUT) : 0;
+        try {
+            if (match(TokenKind.INPUT)) {
+                int input = ast != null ? node(AstKind.INPUT, -1) : -1;
+                next();
+                if (match(TokenKind.INPUT_OPERATOR)) {
+                    next();
+                    int symbol;
+                    if (match(TokenKind.IDENTIFIER) && (symbol = symbolAt()) >= 0) {
+                        if (ast != null) {
+                            ast.addChild(input, node(AstKind.NAME, symbol));
+                        }
+                        next();
+                        if (ast != null) {
+                            close(input);
+                            lastNode = input;
+                        }
+                        return true;
+                    } else {
+                        error(ErrorCode.INPUT_PARAMETER);
+                    }
                 } else {
-                    error("error in the input parameter");
+                    error(ErrorCode.MISSING_INPUT_OPERATOR);
                 }
-            } else {
-                error("missing >> for input statement or there is wrong text before >>");
-            }
-        } else if (matchString(Tokens.OUTPUT)) {
-            next(Tokens.OUTPUT.length());
-            if (matchString("<<")) {
-                next(2);
-                String value_name = getStatementLastParameter();
-                if (isNameExist(value_name) || StringValidation.isValue(value_name)) {
-                    next(value_name.length());
-                    return true;
+            } else if (match(TokenKind.OUTPUT)) {
+                int output = ast != null ? node(AstKind.OUTPUT, -1) : -1;
+                next();
+                if (match(TokenKind.OUTPUT_OPERATOR)) {
+                    next();
+                    if (nameValue()) {
+                        if (ast != null) {
+                            ast.addChild(output, lastNode);
+                            close(output);
+                            lastNode = output;
+                        }
+                        return true;
+                    } else {
+                        error(ErrorCode.OUTPUT_PARAMETER);
+                    }
                 } else {
-                    error("error in the output parameter");
+                    error(ErrorCode.MISSING_OUTPUT_OPERATOR);
                 }
-            } else {
-                error("<< is missing for output or there is wrong text before <<");
+            }
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.IN_OUT, start);
             }
         }
-        return false;
     }
 
     /**
@@ -708,24 +1730,40 @@ public class RecursiveDescentParser {
      * @return boolean
      */
     private boolean whileStatement() {
-        if (matchString(Tokens.WHILE)) {
-            next(Tokens.WHILE.length());
-            if (matchString("(")) {
-                next(1);
-                if (booleanExpresion()) {
-                    if (matchString(")")) {
-                        next(1);
-                        if (block()) {
-                            return true;
+        long start = ParseProfiler.ENABLED ? profiler.enter(ParseProfiler.Rule.WHILE) : 0;
+        try {
+            if (match(TokenKind.WHILE)) {
+                int whileNode = ast != null ? node(AstKind.WHILE, -1) : -1;
+                next();
+                if (match(TokenKind.OPEN_PARENTHESES)) {
+                    next();
+                    if (booleanExpresion()) {
+                        if (ast != null) {
+                            ast.addChild(whileNode, lastNode);
+                        }
+                        if (match(TokenKind.CLOSE_PARENTHESE)) {
+                            next();
+                            if (block()) {
+                                if (ast != null) {
+                                    ast.addChild(whileNode, lastNode);
+                                    close(whileNode);
+                                    lastNode = whileNode;
+                                }
+                                return true;
+                            }
+                        } else {
+                            error(ErrorCode.MISSING_CLOSE_PARENTHESE);
                         }
-                    } else {
-                        error("missing ) or there is wrong text before )");
                     }
+                } else {
+                    error(ErrorCode.MISSING_OPEN_PARENTHESES);
                 }
-            } else {
-                error("missing ( or there is wrong text before (");
+            }
+            return false;
+        } finally {
+            if (ParseProfiler.ENABLED) {
+                profiler.exit(ParseProfiler.Rule.WHILE, start);
             }
         }
-        return false;
     }
 }
@@ -1,4 +1,8 @@
+/**
+ * the regex definitions of the lexical forms, the parser uses the equivalent {@link Recognizers}
+ * and these are kept as the reference they are checked against in compatibility mode
+ */
 public class Rejexes {
-    final static String LIBRARIES = "(#include((<[^>]+>));)*";
+    final static String INCLUDE = "#include<[^>]+>;";
     final static String NAME = "[a-zA-Z][a-zA-Z0-9]*";
 }
@@ -2,21 +2,12 @@ public class StringValidation {
 
 
     public static boolean isInteger(String input) {
-        try { //Try to make the input into an integer
-            Integer.parseInt(input);
-            return true; //Return true if it works
-        } catch (Exception e) {
-            return false; //If it doesn't work return false
-        }
+        return new NumberScanner().scan(input, 0, input.length()) == NumberScanner.Kind.INT;
     }
 
     public static boolean isFloat(String input) {
-        try { //Try to make the input into an integer
-            Float.parseFloat(input);
-            return true; //Return true if it works
-        } catch (Exception e) {
-            return false; //If it doesn't work return false
-        }
+        NumberScanner.Kind kind = new NumberScanner().scan(input, 0, input.length());
+        return kind == NumberScanner.Kind.INT || kind == NumberScanner.Kind.FLOAT;
     }
 
     public static boolean isValue(String input) {
@@ -0,0 +1,250 @@
+import java.util.Arrays;
+
+/**
+ * the declared consts and vars interned by their source spans, so looking a name up hashes and compares the
+ * chars of the source in place and allocates nothing. every name gets a dense id in declaration order,
+ * its var type and whether it is a const are kept in parallel arrays indexed by the id. the names of included
+ * libraries come first and keep their spans in the source of their library
+ */
+public final class SymbolTable {
+
+    private CharSequence source = "";
+
+    // open addressing with linear probing, a slot holds id + 1 and 0 marks an empty slot
+    private int[] slots = new int[64];
+
+    private int[] hashes = new int[16];
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private byte[] types = new byte[16];
+    private boolean[] consts = new boolean[16];
+    // the source of every included name, null for the names of our source, null when nothing is included
+    private CharSequence[] texts;
+    private int size = 0;
+
+    /**
+     * empty the table for the names of a new source, the arrays are kept so they can be reused
+     *
+     * @param source
+     */
+    void reset(CharSequence source) {
+        this.source = source;
+        if (size > 0) {
+            Arrays.fill(slots, 0);
+        }
+        texts = null;
+        size = 0;
+    }
+
+    /**
+     * keep the names for an edited source, the spans of the names must hold the same text in it
+     *
+     * @param source
+     */
+    void rebase(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * the id of the name in the span of the source
+     *
+     * @param start
+     * @param end
+     * @return int the id, -1 when the name isn't declared
+     */
+    int find(int start, int end) {
+        return find(source, start, end);
+    }
+
+    private int find(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && spanEquals(id, text, start, end)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * declare the name in the span of the source, the caller makes sure it isn't declared yet
+     *
+     * @param start
+     * @param end
+     * @param type the ordinal of the var type
+     * @param isConst
+     * @return int the id of the name
+     */
+    int add(int start, int end, byte type, boolean isConst) {
+        return add(source, start, end, type, isConst);
+    }
+
+    private int add(CharSequence text, int start, int end, byte type, boolean isConst) {
+        if (size == starts.length) {
+            int capacity = size << 1;
+            hashes = Arrays.copyOf(hashes, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            types = Arrays.copyOf(types, capacity);
+            consts = Arrays.copyOf(consts, capacity);
+            if (texts != null) {
+                texts = Arrays.copyOf(texts, capacity);
+            }
+        }
+        // keep the table at most half full so the probes stay short
+        if ((size + 1) << 1 > slots.length) {
+            rehash(slots.length << 1);
+        }
+        int id = size++;
+        if (text != source) {
+            if (texts == null) {
+                texts = new CharSequence[starts.length];
+            }
+            texts[id] = text;
+        }
+        hashes[id] = hash(text, start, end);
+        starts[id] = start;
+        lengths[id] = end - start;
+        types[id] = type;
+        consts[id] = isConst;
+        insert(id);
+        return id;
+    }
+
+    /**
+     * declare the names of an included library, they must be included before the names of our source are
+     * declared. a name declared already is skipped when it is the same declaration, which happens when two
+     * included libraries include the same third one
+     *
+     * @param library the names of the library with the names it included itself
+     * @return int the id in library of the first name another included library declares too, -1 when there is
+     * none
+     */
+    int include(SymbolTable library) {
+        for (int id = 0; id < library.size; id++) {
+            CharSequence text = library.textOf(id);
+            int start = library.starts[id];
+            int end = start + library.lengths[id];
+            int known = find(text, start, end);
+            if (known < 0) {
+                add(text, start, end, library.types[id], library.consts[id]);
+            } else if (textOf(known) != text || starts[known] != start) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return SymbolTable a copy that keeps the names after this table is reused for another source
+     */
+    SymbolTable copy() {
+        SymbolTable copy = new SymbolTable();
+        copy.source = source;
+        copy.slots = slots.clone();
+        copy.hashes = Arrays.copyOf(hashes, Math.max(size, 1));
+        copy.starts = Arrays.copyOf(starts, Math.max(size, 1));
+        copy.lengths = Arrays.copyOf(lengths, Math.max(size, 1));
+        copy.types = Arrays.copyOf(types, Math.max(size, 1));
+        copy.consts = Arrays.copyOf(consts, Math.max(size, 1));
+        copy.texts = texts == null ? null : Arrays.copyOf(texts, Math.max(size, 1));
+        copy.size = size;
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id
+     * @return byte the ordinal of the var type of the name
+     */
+    byte type(int id) {
+        return types[id];
+    }
+
+    /**
+     * @param id
+     * @return boolean true for a name declared as float, false for int
+     */
+    public boolean isFloat(int id) {
+        return types[id] == RecursiveDescentParser.VarType.Float.ordinal();
+    }
+
+    public boolean isConst(int id) {
+        return consts[id];
+    }
+
+    /**
+     * @param id
+     * @return int the offset of the declaration of the name in the source, in the source of its library for an
+     * included name
+     */
+    public int start(int id) {
+        return starts[id];
+    }
+
+    /**
+     * the text of the name, this is the only method that copies the source
+     *
+     * @param id
+     * @return String
+     */
+    public String name(int id) {
+        return textOf(id).subSequence(starts[id], starts[id] + lengths[id]).toString();
+    }
+
+    /**
+     * @param id
+     * @return boolean true for a name declared by an included library
+     */
+    public boolean isIncluded(int id) {
+        return texts != null && texts[id] != null;
+    }
+
+    private CharSequence textOf(int id) {
+        return texts != null && texts[id] != null ? texts[id] : source;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int id = 0; id < size; id++) {
+            insert(id);
+        }
+    }
+
+    private void insert(int id) {
+        int mask = slots.length - 1;
+        int slot = hashes[id] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        // spread the high bits into the low bits used as the slot
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean spanEquals(int id, CharSequence text, int start, int end) {
+        if (lengths[id] != end - start) {
+            return false;
+        }
+        CharSequence declared = textOf(id);
+        int other = starts[id];
+        for (int i = start; i < end; i++, other++) {
+            if (text.charAt(i) != declared.charAt(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
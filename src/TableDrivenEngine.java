@@ -0,0 +1,300 @@
+import java.util.Arrays;
+
+/**
+ * parses with the LL(1) table generated from {@link #GRAMMAR} instead of the hand written rules: a loop pops
+ * the next symbol off a stack, matches a token, replaces a non-terminal by the alternative the table picks for
+ * the next token, or runs an action. the actions do the checks a context free grammar can't express, the
+ * declared names, the types of the literals and the int range, so the engine accepts exactly the programs
+ * {@link RecursiveDescentParser} accepts.
+ *
+ * the engine only validates, it builds no tree and stops at the first error. the stack is on the heap, so
+ * like {@link ExplicitStackEngine} it has no nesting limit. when profiling is on, a non-terminal that stands
+ * for a rule of the profiler pushes a mark under its alternative, the rule is left when the mark is popped
+ */
+class TableDrivenEngine {
+
+    enum Action {
+        INT_TYPE,
+        FLOAT_TYPE,
+        DECLARE_CONST,
+        DECLARE_VAR,
+        CONST_VALUE,
+        NEGATIVE_CONST_VALUE,
+        ASSIGN_TARGET,
+        DECLARED,
+        FACTOR_NUMBER,
+        VALUE,
+        NEGATIVE_VALUE,
+    }
+
+    private final static Action[] ACTIONS = Action.values();
+
+    /**
+     * the grammar of the header of {@link RecursiveDescentParser} in LL(1) form. the statements of a list are
+     * separated by ; and each of them may be the null statement, so ;; and a ; before the } are fine but two
+     * statements without a ; between them fail at the second one. the null statement is also allowed before
+     * the else or the endif of an if statement. a null error takes the error of the rule the non-terminal is
+     * used in
+     */
+    final static Grammar GRAMMAR = new Grammar(ACTIONS)
+            .rule("program", ErrorCode.MAIN,
+                    "body END_OF_FILE EOF")
+            .rule("body", ErrorCode.MAIN,
+                    "libraries MAIN OPEN_PARENTHESES CLOSE_PARENTHESE consts vars block")
+            .rule("libraries", ErrorCode.LIBRARY,
+                    "LIBRARY libraries", "@")
+            .rule("consts", ErrorCode.VARIABLES,
+                    "CONST data-type IDENTIFIER #DECLARE_CONST EQUAL const-value SEMICOLON consts", "@")
+            .rule("const-value", ErrorCode.CONST_VALUE,
+                    "NUMBER #CONST_VALUE", "PLUS NUMBER #CONST_VALUE", "MINUS NUMBER #NEGATIVE_CONST_VALUE")
+            .rule("vars", ErrorCode.VARIABLES,
+                    "VAR data-type IDENTIFIER #DECLARE_VAR more-names SEMICOLON vars", "@")
+            .rule("more-names", ErrorCode.VAR_NAME_LIST,
+                    "COMMA IDENTIFIER #DECLARE_VAR more-names", "@")
+            .rule("data-type", ErrorCode.DATATYPE,
+                    "INT #INT_TYPE", "FLOAT #FLOAT_TYPE")
+            .rule("block", ErrorCode.MISSING_OPEN_BRACE,
+                    "OPEN_BRACE stmt-list CLOSE_BRACE")
+            .rule("stmt-list", ErrorCode.STATEMENT,
+                    "optional-statement stmt-tail")
+            .rule("stmt-tail", ErrorCode.MISSING_SEMICOLON,
+                    "SEMICOLON stmt-list", "@")
+            .rule("statement", ErrorCode.STATEMENT,
+                    "block", "if-stmt", "while-stmt",
+                    "INPUT INPUT_OPERATOR IDENTIFIER #DECLARED",
+                    "OUTPUT OUTPUT_OPERATOR name-value",
+                    "IDENTIFIER #ASSIGN_TARGET EQUAL exp")
+            .rule("optional-statement", null,
+                    "statement", "@")
+            .rule("if-stmt", ErrorCode.IF_STATEMENT,
+                    "IF OPEN_PARENTHESES bool-exp CLOSE_PARENTHESE optional-statement else-part ENDIF")
+            .rule("else-part", ErrorCode.ELSE,
+                    "ELSE optional-statement", "@")
+            .rule("while-stmt", ErrorCode.WHILE_STATEMENT,
+                    "WHILE OPEN_PARENTHESES bool-exp CLOSE_PARENTHESE block")
+            .rule("exp", ErrorCode.MISSING_FACTOR,
+                    "term exp-tail")
+            .rule("exp-tail", ErrorCode.ADD_OPERATION,
+                    "PLUS term exp-tail", "MINUS term exp-tail", "@")
+            .rule("term", ErrorCode.MISSING_FACTOR,
+                    "factor term-tail")
+            .rule("term-tail", ErrorCode.MUL_OPERATION,
+                    "STAR factor term-tail", "SLASH factor term-tail", "PERCENT factor term-tail", "@")
+            .rule("factor", ErrorCode.MISSING_FACTOR,
+                    "OPEN_PARENTHESES exp CLOSE_PARENTHESE", "NUMBER #FACTOR_NUMBER", "IDENTIFIER #DECLARED")
+            .rule("bool-exp", ErrorCode.BOOLEAN_EXPRESSION,
+                    "name-value relational-operator name-value")
+            .rule("relational-operator", ErrorCode.RELATIONAL_OPERATION,
+                    "EQUAL_EQUAL", "NOT_EQUAL", "LESS", "LESS_EQUAL", "GREATER", "GREATER_EQUAL")
+            .rule("name-value", null,
+                    "IDENTIFIER #DECLARED", "NUMBER #VALUE", "PLUS NUMBER #VALUE", "MINUS NUMBER #NEGATIVE_VALUE")
+            .build();
+
+    // the error of a token that doesn't match, by token kind, null for the error of the rule it is used in
+    private final static ErrorCode[] MISSING = new ErrorCode[TokenKind.VALUES.length];
+
+    // the symbol of the mark of a profiled rule is EXIT + the ordinal of the rule
+    private final static int EXIT = Grammar.ACTION + ACTIONS.length;
+    // the rule of the profiler a non-terminal stands for, by non-terminal
+    private final static ParseProfiler.Rule[] PROFILED = new ParseProfiler.Rule[GRAMMAR.nonTerminals.length];
+
+    static {
+        MISSING[TokenKind.END_OF_FILE.ordinal()] = ErrorCode.MISSING_END_OF_FILE;
+        MISSING[TokenKind.EOF.ordinal()] = ErrorCode.TEXT_AFTER_END_OF_FILE;
+        MISSING[TokenKind.MAIN.ordinal()] = ErrorCode.MAIN;
+        MISSING[TokenKind.OPEN_PARENTHESES.ordinal()] = ErrorCode.MISSING_OPEN_PARENTHESES;
+        MISSING[TokenKind.CLOSE_PARENTHESE.ordinal()] = ErrorCode.MISSING_CLOSE_PARENTHESE;
+        MISSING[TokenKind.OPEN_BRACE.ordinal()] = ErrorCode.MISSING_OPEN_BRACE;
+        MISSING[TokenKind.CLOSE_BRACE.ordinal()] = ErrorCode.MISSING_CLOSE_BRACE;
+        MISSING[TokenKind.ENDIF.ordinal()] = ErrorCode.MISSING_ENDIF;
+        MISSING[TokenKind.INPUT_OPERATOR.ordinal()] = ErrorCode.MISSING_INPUT_OPERATOR;
+        MISSING[TokenKind.OUTPUT_OPERATOR.ordinal()] = ErrorCode.MISSING_OUTPUT_OPERATOR;
+        String[] names = {"program", "block", "statement", "if-stmt", "while-stmt", "exp", "term", "factor",
+                "bool-exp"};
+        ParseProfiler.Rule[] rules = {ParseProfiler.Rule.PROGRAM, ParseProfiler.Rule.BLOCK,
+                ParseProfiler.Rule.STATEMENT, ParseProfiler.Rule.IF, ParseProfiler.Rule.WHILE, ParseProfiler.Rule.EXP,
+                ParseProfiler.Rule.TERM, ParseProfiler.Rule.FACTOR, ParseProfiler.Rule.BOOLEAN_EXPRESSION};
+        for (int i = 0; i < names.length; i++) {
+            PROFILED[Arrays.asList(GRAMMAR.nonTerminals).indexOf(names[i])] = rules[i];
+        }
+    }
+
+    private final RecursiveDescentParser parser;
+    private final NumberScanner numbers = new NumberScanner();
+
+    // a symbol of the grammar in the low 16 bits, the non-terminal whose alternative pushed it above
+    private int[] stack = new int[64];
+    // the time a profiled rule was entered, at the position of its mark, only when profiling is on
+    private long[] starts = ParseProfiler.ENABLED ? new long[64] : null;
+
+    TableDrivenEngine(RecursiveDescentParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * non-terminal function:  body   $
+     *
+     * @return boolean
+     */
+    boolean program() {
+        short[][] table = GRAMMAR.table;
+        short[][] alternatives = GRAMMAR.alternatives;
+        RecursiveDescentParser p = parser;
+        TokenStream tokens = p.tokens;
+        int top = 0;
+        stack[top++] = Grammar.NON_TERMINAL;
+        while (top > 0) {
+            int entry = stack[--top];
+            int symbol = entry & 0xffff;
+            if (symbol < Grammar.NON_TERMINAL) {
+                if (symbol != tokens.ordinal(p.tokenPointer)) {
+                    if (symbol == TokenKind.NUMBER.ordinal()) {
+                        // a number is only matched after a + or -, like in the hand written rules a signed
+                        // value without its number fails at the sign
+                        p.tokenPointer--;
+                    }
+                    ErrorCode missing = MISSING[symbol];
+                    p.error(missing != null ? missing : errorOf(entry >>> 16));
+                    return fail(top);
+                }
+                p.next();
+            } else if (symbol < Grammar.ACTION) {
+                int nonTerminal = symbol - Grammar.NON_TERMINAL;
+                int alternative = table[nonTerminal][tokens.ordinal(p.tokenPointer)];
+                if (alternative < 0) {
+                    ErrorCode error = GRAMMAR.errors[nonTerminal];
+                    p.error(error != null ? error : errorOf(entry >>> 16));
+                    return fail(top);
+                }
+                short[] symbols = alternatives[alternative];
+                if (top + symbols.length + 1 > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + symbols.length + 1));
+                    if (ParseProfiler.ENABLED) {
+                        starts = Arrays.copyOf(starts, stack.length);
+                    }
+                }
+                if (ParseProfiler.ENABLED && PROFILED[nonTerminal] != null) {
+                    starts[top] = p.profiler.enter(PROFILED[nonTerminal]);
+                    stack[top++] = EXIT + PROFILED[nonTerminal].ordinal();
+                }
+                int owner = nonTerminal << 16;
+                for (int i = symbols.length - 1; i >= 0; i--) {
+                    stack[top++] = symbols[i] | owner;
+                }
+            } else if (symbol >= EXIT) {
+                p.profiler.exit(ParseProfiler.RULES[symbol - EXIT], starts[top]);
+            } else if (!action(ACTIONS[symbol - Grammar.ACTION])) {
+                return fail(top);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * leave the profiled rules whose marks are still on the stack
+     *
+     * @param top
+     * @return boolean false
+     */
+    private boolean fail(int top) {
+        if (ParseProfiler.ENABLED) {
+            for (int i = top - 1; i >= 0; i--) {
+                int symbol = stack[i] & 0xffff;
+                if (symbol >= EXIT) {
+                    parser.profiler.exit(ParseProfiler.RULES[symbol - EXIT], starts[i]);
+                }
+            }
+        }
+        return false;
+    }
+
+    private static ErrorCode errorOf(int nonTerminal) {
+        ErrorCode error = GRAMMAR.errors[nonTerminal];
+        return error != null ? error : ErrorCode.STATEMENT;
+    }
+
+    /**
+     * run an action on the token matched last
+     *
+     * @param action
+     * @return boolean false after reporting an error at that token
+     */
+    private boolean action(Action action) {
+        RecursiveDescentParser p = parser;
+        p.tokenPointer--;
+        ErrorCode error = null;
+        switch (action) {
+            case INT_TYPE:
+                p.currentVarType = RecursiveDescentParser.VarType.Int;
+                break;
+            case FLOAT_TYPE:
+                p.currentVarType = RecursiveDescentParser.VarType.Float;
+                break;
+            case DECLARE_CONST:
+            case DECLARE_VAR:
+                if (p.symbolAt() >= 0) {
+                    error = action == Action.DECLARE_CONST ? ErrorCode.CONST_NAME : ErrorCode.VAR_NAME_LIST;
+                } else {
+                    p.declareName(action == Action.DECLARE_CONST);
+                }
+                break;
+            case ASSIGN_TARGET: {
+                // the hand written rule looks at the = too, a name without one fails at the name
+                int symbol = p.symbolAt();
+                if (symbol < 0 || p.tokens.kind(p.tokenPointer + 1) != TokenKind.EQUAL) {
+                    error = ErrorCode.ASSIGN_NAME;
+                } else {
+                    p.currentVarType = p.typeOf(symbol);
+                }
+                break;
+            }
+            case DECLARED:
+                if (p.symbolAt() < 0) {
+                    error = ErrorCode.UNDECLARED_NAME;
+                }
+                break;
+            case CONST_VALUE:
+            case NEGATIVE_CONST_VALUE: {
+                NumberScanner.Kind value = scan(action == Action.NEGATIVE_CONST_VALUE);
+                if (value == NumberScanner.Kind.INT_OVERFLOW) {
+                    error = ErrorCode.INT_OUT_OF_RANGE;
+                } else if (value != NumberScanner.Kind.INT
+                        && (value != NumberScanner.Kind.FLOAT || p.currentVarType == RecursiveDescentParser.VarType.Int)) {
+                    error = ErrorCode.CONST_VALUE;
+                }
+                break;
+            }
+            case FACTOR_NUMBER: {
+                NumberScanner.Kind value = scan(false);
+                if (value == NumberScanner.Kind.INT_OVERFLOW) {
+                    error = ErrorCode.INT_OUT_OF_RANGE;
+                } else if (value != NumberScanner.Kind.INT && p.currentVarType == RecursiveDescentParser.VarType.Int) {
+                    error = ErrorCode.FACTOR_NOT_INTEGER;
+                } else if (value != NumberScanner.Kind.INT && value != NumberScanner.Kind.FLOAT) {
+                    error = ErrorCode.FACTOR_NOT_NUMBER;
+                }
+                break;
+            }
+            default: {
+                NumberScanner.Kind value = scan(action == Action.NEGATIVE_VALUE);
+                if (value == NumberScanner.Kind.INT_OVERFLOW) {
+                    error = ErrorCode.INT_OUT_OF_RANGE;
+                } else if (value != NumberScanner.Kind.INT && value != NumberScanner.Kind.FLOAT) {
+                    error = ErrorCode.FACTOR_NOT_NUMBER;
+                }
+            }
+        }
+        if (error != null) {
+            p.error(error);
+            return false;
+        }
+        p.next();
+        return true;
+    }
+
+    private NumberScanner.Kind scan(boolean negative) {
+        TokenStream tokens = parser.tokens;
+        int token = parser.tokenPointer;
+        return numbers.scan(tokens.getSource(), tokens.start(token), tokens.end(token), negative);
+    }
+}
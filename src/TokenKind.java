@@ -0,0 +1,87 @@
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * the kinds of tokens produced by the {@link Lexer}
+ */
+public enum TokenKind {
+    IDENTIFIER(null),
+    NUMBER(null),
+    LIBRARY(null),
+    MAIN(Tokens.MAIN),
+    CONST(Tokens.CONST),
+    VAR(Tokens.VAR),
+    INT(Tokens.INT),
+    FLOAT(Tokens.FLOAT),
+    INPUT(Tokens.INPUT),
+    OUTPUT(Tokens.OUTPUT),
+    IF(Tokens.IF),
+    ELSE(Tokens.ELSE),
+    ENDIF(Tokens.ENDIF),
+    WHILE(Tokens.WHILE),
+    HASH(Tokens.HASH),
+    OPEN_PARENTHESES(Tokens.OPEN_PARENTHESES),
+    CLOSE_PARENTHESE(Tokens.CLOSE_PARENTHESE),
+    OPEN_BRACE(Tokens.OPEN_BRACE),
+    CLOSE_BRACE(Tokens.CLOSE_BRACE),
+    SEMICOLON(Tokens.SEMICOLON),
+    COMMA(Tokens.COMMA),
+    EQUAL(Tokens.EQUAL),
+    PLUS(Tokens.PLUS),
+    MINUS(Tokens.MINUS),
+    STAR(Tokens.STAR),
+    SLASH(Tokens.SLASH),
+    PERCENT(Tokens.PERCENT),
+    EQUAL_EQUAL(Tokens.EQUAL_EQUAL),
+    NOT_EQUAL(Tokens.NOT_EQUAL),
+    LESS(Tokens.LESS),
+    LESS_EQUAL(Tokens.LESS_EQUAL),
+    GREATER(Tokens.GREATER),
+    GREATER_EQUAL(Tokens.GREATER_EQUAL),
+    INPUT_OPERATOR(Tokens.INPUT_OPERATOR),
+    OUTPUT_OPERATOR(Tokens.OUTPUT_OPERATOR),
+    END_OF_FILE(Tokens.END_OF_FILE),
+    UNKNOWN(null),
+    EOF(null);
+
+    final static TokenKind[] VALUES = values();
+
+    /**
+     * the fixed text of the token, null for tokens that carry their own text
+     */
+    final String text;
+
+    TokenKind(String text) {
+        this.text = text;
+    }
+
+    /**
+     * bit mask of a set of token kinds, so membership is a single and instead of a set lookup
+     *
+     * @param kinds
+     * @return long
+     */
+    static long maskOf(Set<TokenKind> kinds) {
+        long mask = 0;
+        for (TokenKind kind : kinds) {
+            mask |= 1L << kind.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * the token kinds of a mask built by {@link #maskOf}
+     *
+     * @param mask
+     * @return Set<TokenKind>
+     */
+    static Set<TokenKind> kindsOf(long mask) {
+        Set<TokenKind> kinds = EnumSet.noneOf(TokenKind.class);
+        for (TokenKind kind : VALUES) {
+            if ((mask & (1L << kind.ordinal())) != 0) {
+                kinds.add(kind);
+            }
+        }
+        return kinds;
+    }
+}
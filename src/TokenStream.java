@@ -0,0 +1,151 @@
+import java.util.Arrays;
+
+/**
+ * compact token stream produced by the lexer, every token is stored as a row of parallel primitive arrays
+ * (kind, start offset, length, line, column) so no object is allocated per token
+ */
+public class TokenStream {
+
+    private CharSequence source;
+
+    private byte[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] columns;
+    private int size = 0;
+
+    public TokenStream(CharSequence source, int capacity) {
+        this.source = source;
+        capacity = Math.max(capacity, 16);
+        kinds = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+    }
+
+    /**
+     * empty the stream for a new source, the arrays are kept so they can be reused
+     *
+     * @param source
+     */
+    void reset(CharSequence source) {
+        this.source = source;
+        size = 0;
+    }
+
+    /**
+     * @return int the number of tokens the arrays can hold without growing
+     */
+    public int capacity() {
+        return kinds.length;
+    }
+
+    /**
+     * append a token to the end of the stream
+     */
+    void add(TokenKind kind, int start, int length, int line, int column) {
+        if (size == kinds.length) {
+            int capacity = size + (size >> 1);
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        columns[size] = column;
+        size++;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * the kind of the token at the given index, indexes past the end read as the last token (EOF)
+     *
+     * @param index
+     * @return TokenKind
+     */
+    public TokenKind kind(int index) {
+        return TokenKind.VALUES[kinds[Math.min(index, size - 1)]];
+    }
+
+    /**
+     * @param index
+     * @return int the ordinal of the kind of the token at the given index, without the lookup of the enum
+     */
+    int ordinal(int index) {
+        return kinds[Math.min(index, size - 1)];
+    }
+
+    public int start(int index) {
+        return starts[Math.min(index, size - 1)];
+    }
+
+    public int length(int index) {
+        return lengths[Math.min(index, size - 1)];
+    }
+
+    public int end(int index) {
+        return start(index) + length(index);
+    }
+
+    public int line(int index) {
+        return lines[Math.min(index, size - 1)];
+    }
+
+    public int column(int index) {
+        return columns[Math.min(index, size - 1)];
+    }
+
+    /**
+     * to find if the token at the given index is one of the kinds in the mask built by {@link TokenKind#maskOf}
+     *
+     * @param index
+     * @param mask
+     * @return boolean
+     */
+    public boolean kindIn(int index, long mask) {
+        return (mask & (1L << kinds[Math.min(index, size - 1)])) != 0;
+    }
+
+    /**
+     * to find if the text of the token at the given index equals a word, without copying the source
+     *
+     * @param index
+     * @param word
+     * @return boolean
+     */
+    public boolean textEquals(int index, String word) {
+        int start = start(index);
+        if (length(index) != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (source.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the source text of the token at the given index
+     *
+     * @param index
+     * @return String
+     */
+    public String text(int index) {
+        return source.subSequence(start(index), end(index)).toString();
+    }
+}
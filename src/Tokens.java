@@ -4,7 +4,8 @@ import java.util.*;
  * Constant class for the used Tokens in the program
  */
 public class Tokens {
-    final static String MAIN = "main()";
+    final static String MAIN = "main";
+    final static String INCLUDE = "include";
     final static String CONST = "const";
     final static String VAR = "var";
     final static String INT = "int";
@@ -15,6 +16,7 @@ public class Tokens {
     final static String ELSE = "else";
     final static String ENDIF = "endif";
     final static String WHILE = "while";
+    final static String HASH = "#";
     final static String OPEN_PARENTHESES = "(";
     final static String CLOSE_PARENTHESE = ")";
     final static String OPEN_BRACE = "{";
@@ -22,18 +24,24 @@ public class Tokens {
     final static String END_OF_FILE = "$";
     final static String EQUAL = "=";
     final static String SEMICOLON = ";";
-    final static Set<String> RELATIONAL_OPERATIONS = new HashSet<>(Arrays.asList("==", "!=", "<", "<=", ">", ">="));
-    final static List<String> END_STATEMENT = new ArrayList<>(Arrays.asList(Tokens.ELSE, Tokens.ENDIF, Tokens.CLOSE_BRACE, Tokens.SEMICOLON));
-    final static List<String> ADD_OPERATORS = new ArrayList<>(Arrays.asList("+", "-"));
-    final static List<String> MUL_OPERATORS = new ArrayList<>(Arrays.asList("*", "/", "%"));
-    final static List<String> FACTOR_SPLITTERS = new ArrayList<>() {{
-        addAll(ADD_OPERATORS);
-        addAll(MUL_OPERATORS);
-        addAll(END_STATEMENT);
-        addAll(Arrays.asList(")"));
-    }};
-    final static Set<String> RESERVED_WORDS = new HashSet<>(Arrays.asList(
-            Tokens.MAIN, Tokens.CONST, Tokens.VAR, Tokens.INT, Tokens.FLOAT, Tokens.INPUT, Tokens.OUTPUT, Tokens.IF,
-            Tokens.ELSE, Tokens.WHILE
-    ));
+    final static String COMMA = ",";
+    final static String PLUS = "+";
+    final static String MINUS = "-";
+    final static String STAR = "*";
+    final static String SLASH = "/";
+    final static String PERCENT = "%";
+    final static String EQUAL_EQUAL = "==";
+    final static String NOT_EQUAL = "!=";
+    final static String LESS = "<";
+    final static String LESS_EQUAL = "<=";
+    final static String GREATER = ">";
+    final static String GREATER_EQUAL = ">=";
+    final static String INPUT_OPERATOR = ">>";
+    final static String OUTPUT_OPERATOR = "<<";
+    final static Set<TokenKind> RELATIONAL_OPERATIONS = EnumSet.of(TokenKind.EQUAL_EQUAL, TokenKind.NOT_EQUAL,
+            TokenKind.LESS, TokenKind.LESS_EQUAL, TokenKind.GREATER, TokenKind.GREATER_EQUAL);
+    final static Set<TokenKind> END_STATEMENT = EnumSet.of(TokenKind.ELSE, TokenKind.ENDIF, TokenKind.CLOSE_BRACE,
+            TokenKind.SEMICOLON);
+    final static Set<TokenKind> ADD_OPERATORS = EnumSet.of(TokenKind.PLUS, TokenKind.MINUS);
+    final static Set<TokenKind> MUL_OPERATORS = EnumSet.of(TokenKind.STAR, TokenKind.SLASH, TokenKind.PERCENT);
 }
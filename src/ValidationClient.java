@@ -0,0 +1,250 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * thin client of the {@link ValidationServer}, requests are pipelined: many can be sent before their
+ * responses are received, which may come in another order
+ *
+ * usage:  ValidationClient [--port n] [--max-errors n] (file | directory | glob | @list-file)...
+ */
+public class ValidationClient implements Closeable {
+
+    /**
+     * the most requests sent by main before it waits for a response, so neither side blocks on a full socket
+     */
+    private final static int WINDOW = 256;
+
+    /**
+     * the most bytes of code a request can carry, the rest of the frame is its length, id and error cap
+     */
+    public final static int MAX_CODE = ValidationServer.MAX_FRAME - 6;
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private int nextId = 0;
+
+    /**
+     * the answer to one request
+     */
+    public static final class Response {
+        private final int id;
+        private final ParseResult result;
+        private final String failure;
+
+        Response(int id, ParseResult result, String failure) {
+            this.id = id;
+            this.result = result;
+            this.failure = failure;
+        }
+
+        /**
+         * @return int the id returned by {@link #send} for the request
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return ParseResult an invalid result without errors when the server failed on the request
+         */
+        public ParseResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return String why the server failed on the request, null when it was parsed
+         */
+        public String getFailure() {
+            return failure;
+        }
+    }
+
+    /**
+     * connect to a server on the loopback address
+     *
+     * @param port
+     * @throws IOException
+     */
+    public ValidationClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+    }
+
+    /**
+     * queue a request, it is sent with the next {@link #flush}
+     *
+     * @param code      the code as UTF-8
+     * @param maxErrors
+     * @return int the id of the request
+     * @throws IOException
+     */
+    public int send(byte[] code, int maxErrors) throws IOException {
+        if (code.length > MAX_CODE) {
+            throw new IOException("the code is too large for a request (" + code.length + " bytes)");
+        }
+        int id = nextId++;
+        out.writeInt(6 + code.length);
+        out.writeInt(id);
+        out.writeShort(Math.min(maxErrors, Short.MAX_VALUE));
+        out.write(code);
+        return id;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * wait for the next response, the requests must have been flushed
+     *
+     * @return Response
+     * @throws IOException when the connection ends or the response doesn't fill its frame exactly
+     */
+    public Response receive() throws IOException {
+        int length = in.readInt();
+        if (length < 4 + 1 || length > ValidationServer.MAX_FRAME) {
+            throw new IOException("malformed response, frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        ByteBuffer response = ByteBuffer.wrap(frame);
+        int id = response.getInt();
+        byte valid = response.get();
+        if (valid == ValidationServer.FAILED) {
+            String failure = new String(frame, response.position(), response.remaining(), StandardCharsets.UTF_8);
+            return new Response(id, new ParseResult(false, Diagnostics.EMPTY, 0, 0, 0, 0, null), failure);
+        }
+        if (valid != 0 && valid != 1 || response.remaining() < 4 + 4 + 4 + 8 + 2) {
+            throw new IOException("malformed response " + id);
+        }
+        int chars = response.getInt();
+        int tokens = response.getInt();
+        int names = response.getInt();
+        long nanos = response.getLong();
+        int errorCount = response.getShort();
+        if (errorCount < 0 || response.remaining() != errorCount * 13) {
+            throw new IOException("malformed response " + id + ", " + errorCount + " errors in "
+                    + response.remaining() + " bytes");
+        }
+        Diagnostics errors = errorCount == 0 ? Diagnostics.EMPTY : new Diagnostics(errorCount);
+        for (int i = 0; i < errorCount; i++) {
+            int code = response.get() & 0xFF;
+            if (code >= ErrorCode.VALUES.length) {
+                throw new IOException("malformed response " + id + ", unknown error code " + code);
+            }
+            errors.add(ErrorCode.VALUES[code], response.getInt(), response.getInt(), response.getInt());
+        }
+        return new Response(id, new ParseResult(valid == 1, errors, chars, tokens, names, nanos, null), null);
+    }
+
+    /**
+     * validate one code and wait for its result
+     *
+     * @param code
+     * @return ParseResult
+     * @throws IOException
+     */
+    public ParseResult validate(CharSequence code) throws IOException {
+        send(code.toString().getBytes(StandardCharsets.UTF_8), 1);
+        flush();
+        Response response = receive();
+        if (response.getFailure() != null) {
+            throw new IOException("the server failed on the request: " + response.getFailure());
+        }
+        return response.getResult();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public static void main(String[] args) {
+        int port = 7077;
+        int maxErrors = 1;
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--max-errors") && i + 1 < args.length) {
+                maxErrors = Integer.parseInt(args[++i]);
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+        try (ValidationClient client = new ValidationClient(port)) {
+            List<Path> files = BatchValidator.collectFiles(inputs);
+            // the file of every request id, a file that can't be sent gets no id
+            Path[] requested = new Path[files.size()];
+            long startTime = System.nanoTime();
+            int failures = 0;
+            int next = 0;
+            int pending = 0;
+            while (next < files.size() || pending > 0) {
+                while (next < files.size() && pending < WINDOW) {
+                    Path file = files.get(next++);
+                    byte[] code;
+                    try {
+                        long size = Files.size(file);
+                        if (size > MAX_CODE) {
+                            throw new IOException("the file is too large for a request (" + size + " bytes)");
+                        }
+                        code = Files.readAllBytes(file);
+                    } catch (IOException e) {
+                        failures++;
+                        System.out.println(file + ": error, "
+                                + (e instanceof NoSuchFileException ? "no such file" : e.getMessage()));
+                        continue;
+                    }
+                    requested[client.send(code, maxErrors)] = file;
+                    pending++;
+                }
+                if (pending == 0) {
+                    break;
+                }
+                client.flush();
+                Response response = client.receive();
+                pending--;
+                int id = response.getId();
+                if (id < 0 || id >= requested.length || requested[id] == null) {
+                    throw new IOException("response to an unknown request " + id);
+                }
+                Path file = requested[id];
+                requested[id] = null;
+                ParseResult result = response.getResult();
+                if (!result.isValid()) {
+                    failures++;
+                }
+                if (response.getFailure() != null) {
+                    System.out.println(file + ": server failed, " + response.getFailure());
+                    continue;
+                }
+                System.out.println(file + ": " + (result.isValid() ? "valid syntax"
+                        : "invalid syntax, " + String.join(System.lineSeparator() + "    ", result.getErrors())));
+            }
+            double micros = Math.max(System.nanoTime() - startTime, 1) / 1e3;
+            System.out.printf("%d files, %d failed, %.1f us/file%n", files.size(), failures,
+                    micros / Math.max(files.size(), 1));
+            System.exit(failures == 0 ? 0 : 1);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * long running validation server on a localhost TCP port, so build tools validate files on a warm JVM
+ * instead of starting one per file. every connection may pipeline many requests, a reader thread per
+ * connection puts them on a bounded queue and a fixed set of worker threads, each with its own parser
+ * warmed up at start, takes them off in batches and answers them. when the queue is full the readers
+ * stop reading so the clients are slowed down by TCP itself. the answers go on a bounded queue of their
+ * connection that a writer thread per connection sends, a client that doesn't read them is disconnected
+ * once its queue is full instead of blocking a worker
+ *
+ * every frame starts with the int length of the rest of the frame, all numbers are big endian
+ * request:   id (int), max errors (short), the code as UTF-8
+ * response:  id (int), valid (byte: 0 invalid, 1 valid), chars, tokens, names (int), parse nanos (long),
+ *            error count (short), (error code (byte), offset, line, column (int)) for every error
+ *            or, when the server failed on the request:  id (int), 2 (byte), the message as UTF-8
+ * responses of a connection come in the order the workers finish them, the id tells which request it is
+ *
+ * usage:  ValidationServer [--port n] [--threads n] [--queue n] [--warmup n]
+ */
+public class ValidationServer implements Closeable {
+
+    /**
+     * the largest request accepted, a bigger one closes the connection
+     */
+    final static int MAX_FRAME = 64 << 20;
+    final static int MAX_BATCH = 64;
+
+    /**
+     * the most answers of a connection waiting to be sent, a client that lets more pile up is disconnected
+     */
+    final static int MAX_PENDING_RESPONSES = 4096;
+
+    /**
+     * the valid byte of a response the server failed on
+     */
+    final static byte FAILED = 2;
+
+    private final ServerSocket serverSocket;
+    private final BlockingQueue<Request> queue;
+    private final List<Thread> threads = new ArrayList<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final int warmup;
+    private volatile boolean running = true;
+
+    /**
+     * one request waiting for a worker
+     */
+    private static final class Request {
+        final Connection connection;
+        final int id;
+        final int maxErrors;
+        final byte[] code;
+
+        Request(Connection connection, int id, int maxErrors, byte[] code) {
+            this.connection = connection;
+            this.id = id;
+            this.maxErrors = maxErrors;
+            this.code = code;
+        }
+    }
+
+    /**
+     * a client connection, the workers put its answers on its queue and its writer thread sends them
+     */
+    private static final class Connection {
+        final Socket socket;
+        final BlockingQueue<byte[]> responses = new ArrayBlockingQueue<>(MAX_PENDING_RESPONSES);
+        volatile Thread writer;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * queue the answer to a request, never blocks
+         *
+         * @param id
+         * @param result
+         */
+        void send(int id, ParseResult result) {
+            Diagnostics errors = result.getDiagnostics();
+            int errorCount = Math.min(errors.size(), Short.MAX_VALUE);
+            ByteBuffer frame = ByteBuffer.allocate(4 + 4 + 1 + 4 + 4 + 4 + 8 + 2 + errorCount * 13);
+            frame.putInt(frame.capacity() - 4);
+            frame.putInt(id);
+            frame.put((byte) (result.isValid() ? 1 : 0));
+            frame.putInt(result.getCharCount());
+            frame.putInt(result.getTokenCount());
+            frame.putInt(result.getNameCount());
+            frame.putLong(result.getParseNanos());
+            frame.putShort((short) errorCount);
+            for (int i = 0; i < errorCount; i++) {
+                frame.put((byte) errors.code(i).ordinal());
+                frame.putInt(errors.offset(i));
+                frame.putInt(errors.line(i));
+                frame.putInt(errors.column(i));
+            }
+            send(frame.array());
+        }
+
+        /**
+         * queue the answer to a request the server failed on
+         *
+         * @param id
+         * @param message
+         */
+        void sendFailure(int id, String message) {
+            byte[] text = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer frame = ByteBuffer.allocate(4 + 4 + 1 + text.length);
+            frame.putInt(frame.capacity() - 4);
+            frame.putInt(id);
+            frame.put(FAILED);
+            frame.put(text);
+            send(frame.array());
+        }
+
+        private void send(byte[] frame) {
+            if (!responses.offer(frame)) {
+                // the client doesn't read its answers
+                close();
+            }
+        }
+
+        /**
+         * send the queued answers until the connection is closed, flushed whenever the queue runs empty
+         */
+        void write() {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                    1 << 16))) {
+                while (!socket.isClosed()) {
+                    out.write(responses.take());
+                    for (byte[] frame = responses.poll(); frame != null; frame = responses.poll()) {
+                        out.write(frame);
+                    }
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            Thread writer = this.writer;
+            if (writer != null && writer != Thread.currentThread()) {
+                writer.interrupt();
+            }
+        }
+    }
+
+    /**
+     * bind the server to a port of the loopback address, 0 picks a free port
+     *
+     * @param port
+     * @param workers   the number of worker threads
+     * @param queueSize the most requests waiting for a worker
+     * @param warmup    how many times every worker parses a generated program before serving
+     * @throws IOException
+     */
+    public ValidationServer(int port, int workers, int queueSize, int warmup) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        queue = new ArrayBlockingQueue<>(queueSize);
+        this.warmup = warmup;
+        for (int i = 0; i < workers; i++) {
+            start("validation-worker-" + i, this::work);
+        }
+        start("validation-acceptor", this::accept);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        synchronized (threads) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private void start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        synchronized (threads) {
+            threads.add(thread);
+        }
+        thread.start();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                if (!running) {
+                    // closed while accepting, close() may have missed it
+                    connection.close();
+                }
+                // readers and writers are not kept in threads, they end with their connection
+                Thread writer = new Thread(connection::write, "validation-writer-" + socket.getPort());
+                writer.setDaemon(true);
+                connection.writer = writer;
+                writer.start();
+                Thread reader = new Thread(() -> read(connection), "validation-reader-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * read the requests of a connection until it is closed, put blocks while the queue is full
+     */
+    private void read(Connection connection) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(connection.socket.getInputStream(),
+                1 << 16))) {
+            while (running) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 6 || length > MAX_FRAME) {
+                    break;
+                }
+                int id = in.readInt();
+                int maxErrors = in.readShort();
+                byte[] code = new byte[length - 6];
+                in.readFully(code);
+                queue.put(new Request(connection, id, maxErrors, code));
+            }
+        } catch (IOException ignored) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connection.close();
+            connections.remove(connection);
+        }
+    }
+
+    /**
+     * take the waiting requests off the queue in batches and queue their answers
+     */
+    private void work() {
+        warmUp();
+        List<Request> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (running) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (Request request : batch) {
+                    ParseResult result;
+                    try {
+                        CharSequence code = FileUtil.asChars(ByteBuffer.wrap(request.code), StandardCharsets.UTF_8);
+                        result = ParserPool.parse(code, request.maxErrors);
+                    } catch (IOException e) {
+                        // not UTF-8, there is no code to parse
+                        request.connection.sendFailure(request.id, "the code isn't UTF-8: " + e.getMessage());
+                        continue;
+                    } catch (RuntimeException e) {
+                        // a bug in the parser fails this request only, the worker goes on
+                        request.connection.sendFailure(request.id, e.toString());
+                        continue;
+                    }
+                    request.connection.send(request.id, result);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * let the JIT compile the parser of this worker before the first request
+     */
+    private void warmUp() {
+        if (warmup <= 0) {
+            return;
+        }
+        StringWriter program = new StringWriter();
+        try {
+            new ProgramGenerator().seed(1).statements(200).generate(program);
+        } catch (IOException e) {
+            return;
+        }
+        String code = program.toString();
+        for (int i = 0; i < warmup && running; i++) {
+            ParserPool.parse(code);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 7077;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queueSize = 1024;
+        int warmup = 2000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    workers = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--queue":
+                    queueSize = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        ValidationServer server = new ValidationServer(port, workers, queueSize, warmup);
+        System.out.println("listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,61 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link AsciiScanner} with the vector API, the bytes are compared a vector at a time: 32 with AVX2 and 64 with
+ * AVX-512. {@link AsciiScanner} picks it up when it is on the class path:
+ *   javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+ *   java --add-modules jdk.incubator.vector -cp out Main ...
+ */
+final class VectorAsciiScanner extends AsciiScanner {
+
+    private final static VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    boolean isAscii(ByteBuffer bytes, int from, int to) {
+        int i = from;
+        for (; i + SPECIES.length() <= to; i += SPECIES.length()) {
+            // a byte with its high bit set is negative
+            if (load(bytes, i).compare(VectorOperators.LT, (byte) 0).anyTrue()) {
+                return false;
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    int indexOf(ByteBuffer bytes, int from, int to, byte value) {
+        int i = from;
+        for (; i + SPECIES.length() <= to; i += SPECIES.length()) {
+            VectorMask<Byte> equal = load(bytes, i).eq(value);
+            if (equal.anyTrue()) {
+                return i + equal.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    String name() {
+        return "vector " + SPECIES.vectorBitSize() + " bit";
+    }
+
+    private static ByteVector load(ByteBuffer bytes, int index) {
+        return ByteVector.fromByteBuffer(SPECIES, bytes, index, ByteOrder.nativeOrder());
+    }
+}